@@ -18,6 +18,8 @@ function usage
     For example:
         NEO4JVERSION=4.4.10 NEO4JEDITION=community IMAGE_OS=bullseye $0
         NEO4JVERSION=5.10.0 NEO4JEDITION=enterprise IMAGE_OS=ubi9 $0
+    Set JAVA_RUNTIME=jlink to build trixie or ubi10 images with a Java runtime trimmed to the modules Neo4j uses.
+    Set ASYNC_PROFILER_URL and ASYNC_PROFILER_SHA256 to install that async-profiler release for neo4j-profile.
     "
     exit 1
 }
@@ -49,6 +51,12 @@ if ! contains_element "${IMAGE_OS}" "${SUPPORTED_IMAGE_OS[@]}"; then
     echo >&2 "${IMAGE_OS} is not a supported base image."
     usage
 fi
+# verify java runtime
+JAVA_RUNTIME=${JAVA_RUNTIME:-jdk}
+if ! contains_element "${JAVA_RUNTIME}" "jdk" "jlink"; then
+    echo >&2 "JAVA_RUNTIME must be jdk or jlink, not \"${JAVA_RUNTIME}\"."
+    usage
+fi
 # verify compatible neo4j version
 if [[ ! "${NEO4JVERSION}" =~ ^[0-9]+\.[0-9]+\.[0-9]+.*$  ]]; then
     echo "\"${NEO4JVERSION}\" is not a valid version number."
@@ -93,6 +101,11 @@ sed -i -e "s|%%NEO4J_TARBALL%%|$(tarball_name "${NEO4JVERSION}" "${NEO4JEDITION}
 sed -i -e "s|%%NEO4J_EDITION%%|${NEO4JEDITION}|" "${COREDB_LOCALCXT_DIR}/Dockerfile"
 sed -i -e "s|%%NEO4J_DIST_SITE%%|${DISTRIBUTION_SITE}|" "${COREDB_LOCALCXT_DIR}/Dockerfile"
 
+if [[ "${JAVA_RUNTIME}" == "jlink" ]] && ! grep --quiet "AS java-runtime-jlink" "${COREDB_LOCALCXT_DIR}/Dockerfile"; then
+    echo >&2 "JAVA_RUNTIME=jlink is not supported for neo4j ${NEO4JVERSION} on ${IMAGE_OS}."
+    exit 1
+fi
+
 # copy neo4j-admin sources
 mkdir -p ${ADMIN_LOCALCXT_DIR}/local-package
 cp ${SRC_DIR}/common/* ${ADMIN_LOCALCXT_DIR}/local-package
@@ -126,6 +139,9 @@ coredb_image_tag=neo4jtest:${RANDOM}
 echo "Building CoreDB docker image for neo4j-${NEO4JVERSION} ${NEO4JEDITION} on ${IMAGE_OS}."
 docker build --tag=${coredb_image_tag} \
     --build-arg="NEO4J_URI=file:///startup/$(tarball_name "${NEO4JVERSION}" "${NEO4JEDITION}")" \
+    --build-arg="JAVA_RUNTIME=${JAVA_RUNTIME}" \
+    --build-arg="ASYNC_PROFILER_URL=${ASYNC_PROFILER_URL:-}" \
+    --build-arg="ASYNC_PROFILER_SHA256=${ASYNC_PROFILER_SHA256:-}" \
     "${COREDB_LOCALCXT_DIR}"
 echo "Tagged CoreDB image ${coredb_image_tag}"
 echo -n "${coredb_image_tag}" > ${COREDB_LOCALCXT_DIR}/../.image-id-"${NEO4JEDITION}"
@@ -135,6 +151,7 @@ admin_image_tag=neo4jadmintest:${RANDOM}
 echo "Building neo4j-admin docker image for neo4j-admin-${NEO4JVERSION} ${NEO4JEDITION} on ${IMAGE_OS}."
 docker build --tag=${admin_image_tag} \
     --build-arg="NEO4J_URI=file:///startup/$(tarball_name "${NEO4JVERSION}" "${NEO4JEDITION}")" \
+    --build-arg="JAVA_RUNTIME=${JAVA_RUNTIME}" \
     "${ADMIN_LOCALCXT_DIR}"
 echo "Tagged neo4j-admin image ${admin_image_tag}"
 echo -n "${admin_image_tag}" > ${ADMIN_LOCALCXT_DIR}/../.image-id-"${NEO4JEDITION}"
@@ -65,6 +65,95 @@ function check_mounted_folder_readable
     fi
 }
 
+function scan_mounted_folder_writable
+{
+    # Looks for files inside a mounted folder that are not writable by the neo4j user, and stops at the first one found.
+    # Large /data mounts can contain millions of files, so this can be made cheaper with:
+    #   NEO4J_MOUNT_SCAN_MODE=first       (default) scan the whole folder, stopping at the first non-writable file.
+    #   NEO4J_MOUNT_SCAN_MODE=top-level   only check the folder and the files and folders directly inside it.
+    #   NEO4J_MOUNT_SCAN_TIMEOUT=<secs>   give up scanning after this many seconds and assume the folder is not writable.
+    local _folder=${1}
+    local _scan_args=()
+    local _timeout_cmd=()
+    case "${NEO4J_MOUNT_SCAN_MODE:-first}" in
+        first) ;;
+        top-level) _scan_args=(-maxdepth 1) ;;
+        *)
+            echo >&2 "Invalid value for NEO4J_MOUNT_SCAN_MODE: \"${NEO4J_MOUNT_SCAN_MODE}\". Valid values are \"first\" or \"top-level\"."
+            exit 1
+            ;;
+    esac
+    if [[ -n "${NEO4J_MOUNT_SCAN_TIMEOUT:-}" ]]; then
+        # timeout also accepts values like 30s, but any value it rejects would make the scan pass without checking anything.
+        if [[ ! "${NEO4J_MOUNT_SCAN_TIMEOUT}" =~ ^[0-9]+(\.[0-9]+)?$ ]]; then
+            echo >&2 "Invalid value for NEO4J_MOUNT_SCAN_TIMEOUT: \"${NEO4J_MOUNT_SCAN_TIMEOUT}\". It must be a number of seconds."
+            exit 1
+        fi
+        _timeout_cmd=(timeout "${NEO4J_MOUNT_SCAN_TIMEOUT}")
+    fi
+
+    local _not_writable _exit_code=0
+    _not_writable=$("${_timeout_cmd[@]}" su-exec "${userid}":"${groupid}" \
+        find "${_folder}" "${_scan_args[@]}" -not -writable -print -quit) || _exit_code=$?
+    if [[ ${_exit_code} -eq 124 ]]; then
+        echo "Warning: Scanning \"${_folder}\" for files that are not writable took longer than ${NEO4J_MOUNT_SCAN_TIMEOUT} seconds."
+        return 1
+    fi
+    # e.g. find could not read some of the folders inside, so they are not writable either.
+    if [[ ${_exit_code} -ne 0 ]]; then
+        debug_msg "Scanning ${_folder} for files that are not writable failed with exit code ${_exit_code}"
+        return 1
+    fi
+    if [[ -n "${_not_writable}" ]]; then
+        debug_msg "${_not_writable} is not writable"
+        return 1
+    fi
+    return 0
+}
+
+function reown_mounted_folder
+{
+    # Equivalent to chown -R on the mounted folder, but only changes files that have the wrong owner.
+    # Mounted /data folders can contain millions of files, so the subfolders two levels down
+    # (e.g. /data/databases/neo4j) are re-owned in parallel, limited by the number of CPUs available to the container.
+    # Progress is reported every NEO4J_REOWN_PROGRESS_INTERVAL seconds (default 10), to stdout and to a status file.
+    local _folder=${1}
+    local _parallelism _start_time=${SECONDS}
+    local _status_file="${docker_state_dir}/reown.status"
+    local _done_file="${docker_state_dir}/reown.done"
+    _parallelism=$(container_cpu_count)
+
+    # everything down to the subfolders that will be re-owned in parallel
+    find "${_folder}" -maxdepth 2 \( ! -user "${userid}" -o ! -group "${groupid}" \) \
+        -exec chown --no-dereference "${userid}":"${groupid}" {} +
+    local _subfolders_total
+    _subfolders_total=$(find "${_folder}" -mindepth 2 -maxdepth 2 -type d | wc -l)
+    : > "${_done_file}"
+    echo "Changing owner of ${_subfolders_total} subfolders of ${_folder} using ${_parallelism} parallel jobs."
+
+    (
+        while sleep "${NEO4J_REOWN_PROGRESS_INTERVAL:-10}"; do
+            echo "folder=${_folder} subfolders_done=$(wc -l < "${_done_file}") subfolders_total=${_subfolders_total} elapsed=$(( SECONDS - _start_time ))s" \
+                | tee "${_status_file}"
+        done
+    ) &
+    local _progress_pid=$! _exit_code=0
+
+    find "${_folder}" -mindepth 2 -maxdepth 2 -type d -print0 \
+        | xargs -0 -r -n 1 -P "${_parallelism}" sh -c \
+            'find "$4" -mindepth 1 \( ! -user "$1" -o ! -group "$2" \) -exec chown --no-dereference "$1:$2" {} + && echo "$4" >> "$3"' \
+            _ "${userid}" "${groupid}" "${_done_file}" \
+        || _exit_code=$?
+    kill "${_progress_pid}" 2>/dev/null || true
+    wait "${_progress_pid}" 2>/dev/null || true
+
+    echo "folder=${_folder} subfolders_done=$(wc -l < "${_done_file}") subfolders_total=${_subfolders_total} elapsed=$(( SECONDS - _start_time ))s finished exit_code=${_exit_code}" \
+        > "${_status_file}"
+    rm -f "${_done_file}"
+    debug_msg "Finished changing owner of ${_folder} in $(( SECONDS - _start_time ))s"
+    return ${_exit_code}
+}
+
 function check_mounted_folder_writable_with_chown
 {
 # The /data and /log directory are a bit different because they are very likely to be mounted by the user but not
@@ -96,11 +185,11 @@ function check_mounted_folder_writable_with_chown
         if ! is_writable "${mountFolder}" ;  then
             # warn that we're about to chown the folder and then chown it
             echo "Warning: Folder mounted to \"${mountFolder}\" is not writable from inside container. Changing folder owner to ${userid}."
-            chown -R "${userid}":"${groupid}" "${mountFolder}"
+            reown_mounted_folder "${mountFolder}"
         # check permissions on files in the folder
-        elif [ $(su-exec "${userid}":"${groupid}" find "${mountFolder}" -not -writable | wc -l) -gt 0 ]; then
+        elif ! scan_mounted_folder_writable "${mountFolder}"; then
             echo "Warning: Some files inside \"${mountFolder}\" are not writable from inside container. Changing folder owner to ${userid}."
-            chown -R "${userid}":"${groupid}" "${mountFolder}"
+            reown_mounted_folder "${mountFolder}"
         fi
     else
         if [[ ! -w "${mountFolder}" ]]  && [[ "$(stat -c %U ${mountFolder})" != "neo4j" ]]; then
@@ -109,6 +198,49 @@ function check_mounted_folder_writable_with_chown
     fi
 }
 
+function neo4j_home_ownership_stamp
+{
+    # Everything that decides what the owner and permissions of files in NEO4J_HOME should be.
+    # If any of these change, the stamp no longer matches and the ownership is checked again.
+    echo "owner=${userid}:${groupid} image=${NEO4J_TARBALL:-}:${NEO4J_SHA256:-} home=700 folders=700 conf=600 shipped=go-w"
+}
+
+function fix_neo4j_home_ownership
+{
+    # Recursively chowning NEO4J_HOME on every start copies every file in the image up into the container's
+    # writable layer, even if nothing changed. Instead, only the files that have drifted from the expected
+    # owner and permissions are changed, and a stamp records that the whole tree was correct.
+    # The folders that come with the image and that neo4j only reads from are most of its size. The image already has them
+    # owned by neo4j and not writable by anyone else, so they are left readable for containers started with --user,
+    # and a new container does not have to change them.
+    local _stamp_file="${docker_state_dir}/ownership.stamp"
+    local _shipped_folders="${NEO4J_HOME}/\\(bin\\|jvm-cache\\|labs\\|lib\\|licenses\\|products\\)"
+    local _expected_stamp
+    _expected_stamp="$(neo4j_home_ownership_stamp)"
+
+    if [[ -f "${_stamp_file}" ]] \
+        && [[ "$(< "${_stamp_file}")" == "${_expected_stamp}" ]] \
+        && [[ "$(stat -c %U:%G "${NEO4J_HOME}")" == "${userid}:${groupid}" ]]; then
+        debug_msg "Ownership and permissions of ${NEO4J_HOME} match ${_stamp_file}, skipping chown."
+        return
+    fi
+
+    debug_msg "chowning files in ${NEO4J_HOME} not owned by ${userid}:${groupid}"
+    find "${NEO4J_HOME}" \( ! -user "${userid}" -o ! -group "${groupid}" \) \
+        -exec chown --no-dereference "${userid}":"${groupid}" {} +
+    debug_msg "Removing write permission for other users from the folders in ${NEO4J_HOME} that come with the image"
+    find "${NEO4J_HOME}" -regex "${_shipped_folders}\\(/.*\\)?" ! -type l -perm /022 -exec chmod go-w {} +
+    debug_msg "Setting other folders in ${NEO4J_HOME} and their contents to permissions 700"
+    # this is equivalent to chmod -R 700 on every other top level folder, except for conf files which are set to 600 below.
+    find "${NEO4J_HOME}" -regex "${_shipped_folders}" -prune -o ! -type l \( -type d -o -path "${NEO4J_HOME}/*/*" \) \
+        ! \( -type f -path "${NEO4J_HOME}/conf/*" \) ! -perm 700 -exec chmod 700 {} +
+    debug_msg "Setting all files in ${NEO4J_HOME}/conf to permissions 600"
+    find "${NEO4J_HOME}"/conf -type f ! -perm 600 -exec chmod 600 {} +
+
+    echo "${_expected_stamp}" > "${_stamp_file}"
+    chown "${userid}":"${groupid}" "${_stamp_file}"
+}
+
 function load_plugin_from_location
 {
   # Install a plugin from location at runtime.
@@ -135,11 +267,99 @@ function load_plugin_from_location
   fi
 }
 
-function load_plugin_from_url
+function get_neo4j_version
+{
+    # The image is built from a tarball named neo4j-<edition>-<version>-unix.tar.gz,
+    # so the version can be read from that instead of starting a JVM to run neo4j --version.
+    if [[ "${NEO4J_TARBALL:-}" =~ ^neo4j-[a-z]+-(.+)-unix\.tar\.gz$ ]]; then
+        echo "${BASH_REMATCH[1]}"
+    else
+        neo4j --version | cut -d' ' -f2
+    fi
+}
+
+function plugin_cache_mapping_file
+{
+    # The jar that was chosen for a plugin is recorded for each Neo4j version in the plugin cache, with its checksum,
+    # e.g. /plugin-cache/neo4j-2025.01.0/apoc-extended.json contains {"jar": "<url>", "sha256": "<checksum>"}.
+    echo "/plugin-cache/neo4j-${2}/${1}.json"
+}
+
+function plugin_cache_usable
+{
+    # The plugin cache is only there to save downloads, so a /plugin-cache that cannot be written to is not an error.
+    # Plugins are then downloaded as if there was no cache.
+    if [ ! -d /plugin-cache ]; then
+        return 1
+    fi
+    if [ ! -w /plugin-cache ]; then
+        echo >&2 "WARNING: /plugin-cache is not writable by user ${userid}, so plugins will be downloaded instead of using the cache.
+    Change the owner of the mounted folder, or pass its owner's user ID and group ID to docker run, to use the cache."
+        return 1
+    fi
+    return 0
+}
+
+function install_plugin_from_cache
+{
+    # Copies a plugin from the mounted /plugin-cache to the download folder if it was downloaded for this Neo4j version
+    # before, so that no network access is needed. Returns non-zero if the plugin is not in the cache.
+    local _plugin_name="${1}"
+    local _neo4j_version="${2}"
+    local _download_dir="${3}"
+    local _mapping_file _sha256 _cached_jar
+    _mapping_file="$(plugin_cache_mapping_file "${_plugin_name}" "${_neo4j_version}")"
+    if [ "${use_plugin_cache}" != "yes" ] || [ ! -f "${_mapping_file}" ]; then
+        return 1
+    fi
+    _sha256="$(jq --raw-output '.sha256' "${_mapping_file}")"
+    _cached_jar="/plugin-cache/sha256/${_sha256}.jar"
+    if [ ! -f "${_cached_jar}" ]; then
+        debug_msg "${_mapping_file} refers to ${_cached_jar}, which is not in the cache"
+        return 1
+    fi
+    # a jar that has changed since it was cached, e.g. because a copy into the cache was cut short, is never installed.
+    if [ "$(sha256sum "${_cached_jar}" | cut -d' ' -f1)" != "${_sha256}" ]; then
+        echo >&2 "WARNING: ${_cached_jar} does not match its checksum. Removing it from the plugin cache and downloading \"${_plugin_name}\" again."
+        rm -f "${_cached_jar}" "${_mapping_file}"
+        return 1
+    fi
+    echo "Installing Plugin '${_plugin_name}' from the plugin cache ${_cached_jar}"
+    cp "${_cached_jar}" "${_download_dir}/${_plugin_name}.jar"
+}
+
+function add_plugin_to_cache
 {
-    # Load a plugin at runtime. The provided github repository must have a versions.json on the master branch with the
+    # Stores a downloaded plugin jar in the mounted /plugin-cache by its checksum, and records which jar was chosen for
+    # this Neo4j version. Files are written under a temporary name and then renamed, so an interrupted start cannot
+    # leave a partial jar in the cache. Plugins that cannot be cached are still installed.
+    local _plugin_name="${1}"
+    local _neo4j_version="${2}"
+    local _plugin_jar_url="${3}"
+    local _jar="${4}"
+    local _mapping_file _sha256
+    _mapping_file="$(plugin_cache_mapping_file "${_plugin_name}" "${_neo4j_version}")"
+    _sha256="$(sha256sum "${_jar}" | cut -d' ' -f1)"
+    if ! mkdir -p /plugin-cache/sha256 "${_mapping_file%/*}" || \
+       ! cp "${_jar}" "/plugin-cache/sha256/.${_sha256}.${_plugin_name}.tmp" || \
+       ! mv "/plugin-cache/sha256/.${_sha256}.${_plugin_name}.tmp" "/plugin-cache/sha256/${_sha256}.jar" || \
+       ! jq --null-input --arg jar "${_plugin_jar_url}" --arg sha256 "${_sha256}" '{jar: $jar, sha256: $sha256}' \
+            > "${_mapping_file}.tmp" || \
+       ! mv "${_mapping_file}.tmp" "${_mapping_file}"; then
+        echo >&2 "WARNING: could not add \"${_plugin_name}\" to the plugin cache in /plugin-cache. It will be downloaded again next time."
+        return 0
+    fi
+    debug_msg "Cached ${_plugin_jar_url} as /plugin-cache/sha256/${_sha256}.jar"
+}
+
+function download_plugin_from_url
+{
+    # Download a plugin at runtime. The provided github repository must have a versions.json on the master branch with the
     # correct format.
+    # This runs in the background while the mounted folders are checked, so the jar is downloaded to a temporary folder
+    # and is only moved to the plugins folder by load_plugin_from_url.
     local _plugin_name="${1}" #e.g. apoc, graph-algorithms, graph-ql
+    local _download_dir="${2}"
 
     local _plugins_dir="${NEO4J_HOME}/plugins"
     if [ -d /plugins ]; then
@@ -149,7 +369,11 @@ function load_plugin_from_url
     debug_msg "Will read ${_plugin_name} versions.json from ${_versions_json_url}"
     # Using the same name for the plugin irrespective of version ensures we don't end up with different versions of the same plugin
     local _destination="${_plugins_dir}/${_plugin_name}.jar"
-    local _neo4j_version="$(neo4j --version | cut -d' ' -f2)"
+    local _neo4j_version="$(get_neo4j_version)"
+
+    if install_plugin_from_cache "${_plugin_name}" "${_neo4j_version}" "${_download_dir}"; then
+        return 0
+    fi
 
     # Now we call out to github to get the versions.json for this plugin and we parse that to find the url for the correct plugin jar for our neo4j version
     echo "Fetching versions.json for Plugin '${_plugin_name}' from ${_versions_json_url}"
@@ -170,8 +394,66 @@ function load_plugin_from_url
     Neo4j will continue to start, but \"${_plugin_name}\" will not be loaded."
     else
         echo "Installing Plugin '${_plugin_name}' from ${_plugin_jar_url} to ${_destination} "
-        wget -q --timeout 300 --tries 30 --output-document="${_destination}" "${_plugin_jar_url}"
+        if ! wget -q --timeout 300 --tries 30 --output-document="${_download_dir}/${_plugin_name}.jar" "${_plugin_jar_url}"; then
+            return 1
+        fi
+        if [ "${use_plugin_cache}" == "yes" ]; then
+            add_plugin_to_cache "${_plugin_name}" "${_neo4j_version}" "${_plugin_jar_url}" "${_download_dir}/${_plugin_name}.jar"
+        fi
+    fi
+}
 
+function download_neo4j_plugins
+{
+    # Downloads every requested plugin that is not already in the container to the given folder.
+    # Up to NEO4J_PLUGIN_DOWNLOAD_PARALLELISM plugins are downloaded at the same time. Downloads are joined in the
+    # requested order, so their messages are printed in that order too.
+    local _download_dir="${1}"
+    local _parallelism="${NEO4J_PLUGIN_DOWNLOAD_PARALLELISM:-4}"
+    local _downloads=()
+    local _joined=0
+    for plugin_name in $(echo "${NEO4J_PLUGINS}" | jq --raw-output '.[]'); do
+        if [ -z "$(bundled_plugin_location "${plugin_name}")" ]; then
+            if [ $(( ${#_downloads[@]} - _joined )) -ge ${_parallelism} ]; then
+                join_plugin_download "${_downloads[_joined]}" "${_download_dir}"
+                _joined=$(( _joined + 1 ))
+            fi
+            run_in_background "plugin-download-${plugin_name}" download_plugin_from_url "${plugin_name}" "${_download_dir}"
+            _downloads+=("${plugin_name}")
+        fi
+    done
+    for (( ; _joined < ${#_downloads[@]}; _joined++ )); do
+        join_plugin_download "${_downloads[_joined]}" "${_download_dir}"
+    done
+}
+
+function join_plugin_download
+{
+    # Waits for a plugin download to finish. Plugins that could not be downloaded are marked with a <plugin>.failed file,
+    # so that their configuration is not applied.
+    local _plugin_name="${1}"
+    local _download_dir="${2}"
+    if ! join_background "plugin-download-${_plugin_name}"; then
+        touch "${_download_dir}/${_plugin_name}.failed"
+    fi
+}
+
+function load_plugin_from_url
+{
+    # Moves a plugin downloaded by download_neo4j_plugins into the plugins folder.
+    local _plugin_name="${1}"
+
+    local _plugins_dir="${NEO4J_HOME}/plugins"
+    if [ -d /plugins ]; then
+        local _plugins_dir="/plugins"
+    fi
+    local _destination="${_plugins_dir}/${_plugin_name}.jar"
+
+    if [ -f "${plugin_download_dir}/${_plugin_name}.failed" ]; then
+        return 1
+    fi
+    if [ -f "${plugin_download_dir}/${_plugin_name}.jar" ]; then
+        mv "${plugin_download_dir}/${_plugin_name}.jar" "${_destination}"
         if ! is_readable "${_destination}"; then
             echo >&2 "Plugin at '${_destination}' is not readable"
         exit 1
@@ -179,6 +461,15 @@ function load_plugin_from_url
     fi
 }
 
+function bundled_plugin_location
+{
+    # prints the location of the plugin jar if the plugin is shipped with neo4j, otherwise prints nothing.
+    local _location="$(jq --raw-output "with_entries( select(.key==\"${1}\") ) | to_entries[] | .value.location" /startup/neo4j-plugins.json )"
+    if [ "${_location}" != "null" -a -n "$(shopt -s nullglob; echo ${_location})" ]; then
+        echo "${_location}"
+    fi
+}
+
 function apply_plugin_default_configuration
 {
     # Set the correct Load a plugin at runtime. The provided github repository must have a versions.json on the master branch with the
@@ -200,29 +491,89 @@ function apply_plugin_default_configuration
             echo "Skipping ${_property} for plugin ${_plugin_name} because it is already set."
             echo "You may need to add ${_value} to the ${_property} setting in your configuration file."
         else
-            if grep -o "^[^#]*" "${_neo4j_conf}" | grep -q --fixed-strings "${_property}=" ; then
-                sed --in-place "s/${_property}=/&${_value},/" "${_neo4j_conf}"
-                debug_msg "${_property} was already in the configuration file, so ${_value} was added to it."
-            else
-                echo -e "\n${_property}=${_value}" >> "${_neo4j_conf}"
-                debug_msg "${_property}=${_value} has been added to the configuration file."
-            fi
+            # merged into neo4j.conf by write_plugin_settings_to_conf_file once all plugins are installed
+            printf '%s\t%s\n' "${_property}" "${_value}" >> "${conf_fragments_dir}/30-plugins.settings"
         fi
     done
 }
 
-function install_neo4j_plugins
+function write_plugin_settings_to_conf_file
+{
+    # Applies the plugin properties to a conf file in a single pass, with the same result as applying them one at a time:
+    # a property that is already set gets the value added to the front of its list, otherwise it is appended.
+    local _conf_file=${1}
+    local _settings_file=${2}
+    local _rendered_conf _no_trailing_newline=0
+    _rendered_conf="$(mktemp)"
+    # echo >> on a file without a trailing newline continues its last line
+    if [[ -n "$(tail -c 1 "${_conf_file}")" ]]; then
+        _no_trailing_newline=1
+    fi
+
+    awk -v conf_file="${_conf_file}" -v rendered_conf="${_rendered_conf}" \
+        -v debug="$(debugging_enabled && echo yes)" -v no_trailing_newline="${_no_trailing_newline}" '
+        FILENAME == ARGV[1] { settings[++num_settings] = $0; next }
+        { lines[++num_lines] = $0 }
+        END {
+            for (s = 1; s <= num_settings; s++) {
+                tab = index(settings[s], "\t")
+                property = substr(settings[s], 1, tab - 1)
+                value = substr(settings[s], tab + 1)
+
+                # same as: grep -o "^[^#]*" "${_conf_file}" | grep -q --fixed-strings "${_property}="
+                found = 0
+                for (l = 1; l <= num_lines; l++) {
+                    uncommented = lines[l]
+                    if (index(uncommented, "#")) uncommented = substr(uncommented, 1, index(uncommented, "#") - 1)
+                    if (index(uncommented, property "=")) { found = 1; break }
+                }
+                if (found) {
+                    # same as: sed --in-place "s/${_property}=/&${_value},/" "${_conf_file}"
+                    for (l = 1; l <= num_lines; l++) {
+                        if (match(lines[l], property "=")) {
+                            lines[l] = substr(lines[l], 1, RSTART + RLENGTH - 1) value "," substr(lines[l], RSTART + RLENGTH)
+                        }
+                    }
+                    if (debug) print property " was already in the configuration file, so " value " was added to it."
+                } else {
+                    # same as: echo -e "\n${_property}=${_value}" >> "${_conf_file}"
+                    if (!(no_trailing_newline && num_lines > 0)) lines[++num_lines] = ""
+                    lines[++num_lines] = property "=" value
+                    no_trailing_newline = 0
+                    if (debug) print property "=" value " has been added to the configuration file."
+                }
+            }
+            for (l = 1; l <= num_lines; l++) print lines[l] > rendered_conf
+            close(rendered_conf)
+        }' "${_settings_file}" "${_conf_file}"
+
+    # write over the existing file, so that it keeps its owner and permissions
+    cat "${_rendered_conf}" > "${_conf_file}"
+    rm "${_rendered_conf}"
+}
+
+function validate_neo4j_plugins
 {
-    # first verify that the requested plugins are valid.
+    # verify that the requested plugins are valid.
     debug_msg "One or more NEO4J_PLUGINS have been requested."
     local _known_plugins=($(jq --raw-output "keys[]" /startup/neo4j-plugins.json))
     debug_msg "Checking requested plugins are known and can be installed."
     for plugin_name in $(echo "${NEO4J_PLUGINS}" | jq --raw-output '.[]'); do
         if ! containsElement "${plugin_name}" "${_known_plugins[@]}"; then
-            printf >&2 "\"%s\" is not a known Neo4j plugin. Options are:\n%s" "${plugin_name}" "$(jq --raw-output "keys[1:][]" /startup/neo4j-plugins.json)"
+            printf >&2 "\"%s\" is not a known Neo4j plugin. Options are:\n%s" "${plugin_name}" "$(jq --raw-output 'keys[] | select(startswith("_") | not)' /startup/neo4j-plugins.json)"
             exit 1
         fi
     done
+    if [[ ! "${NEO4J_PLUGIN_DOWNLOAD_PARALLELISM:-4}" =~ ^[1-9][0-9]*$ ]]; then
+        echo >&2 "Invalid value for NEO4J_PLUGIN_DOWNLOAD_PARALLELISM: '${NEO4J_PLUGIN_DOWNLOAD_PARALLELISM}'. It must be a number of downloads, at least 1."
+        exit 1
+    fi
+}
+
+function install_neo4j_plugins
+{
+    # wait for any plugin downloads to finish. This does nothing if there were none.
+    join_background "plugin-downloads"
 
     # We store a copy of the config before we modify it for the plugins to allow us to see if there are user-set values in the input config that we shouldn't override
     local _old_config="$(mktemp)"
@@ -234,14 +585,17 @@ function install_neo4j_plugins
     fi
     for plugin_name in $(echo "${NEO4J_PLUGINS}" | jq --raw-output '.[]'); do
         debug_msg "Plugin ${plugin_name} has been requested"
-        local _location="$(jq --raw-output "with_entries( select(.key==\"${plugin_name}\") ) | to_entries[] | .value.location" /startup/neo4j-plugins.json )"
-        if [ "${_location}" != "null" -a -n "$(shopt -s nullglob; echo ${_location})" ]; then
+        local _location="$(bundled_plugin_location "${plugin_name}")"
+        if [ "${cmd}" == "render-config" ]; then
+            # render-config only produces the configuration, so there is no need to download or copy any jars.
+            apply_plugin_default_configuration "${plugin_name}" "${_old_config}"
+        elif [ -n "${_location}" ]; then
             debug_msg "$plugin_name is already in the container at ${_location}"
             load_plugin_from_location "${plugin_name}" "${_location}"
             debug_msg "Applying plugin specific configurations."
             apply_plugin_default_configuration "${plugin_name}" "${_old_config}"
         else
-            debug_msg "$plugin_name must be downloaded."
+            debug_msg "$plugin_name was downloaded."
             if load_plugin_from_url "${plugin_name}"; then
                 debug_msg "Applying plugin specific configurations."
                 apply_plugin_default_configuration "${plugin_name}" "${_old_config}"
@@ -249,18 +603,841 @@ function install_neo4j_plugins
         fi
     done
     rm "${_old_config}"
+    if [ -f "${conf_fragments_dir}/30-plugins.settings" ]; then
+        write_plugin_settings_to_conf_file "${NEO4J_HOME}"/conf/neo4j.conf "${conf_fragments_dir}/30-plugins.settings"
+    fi
+    if [ -n "${plugin_download_dir:-}" ]; then
+        rm -rf "${plugin_download_dir}"
+    fi
+}
+
+function write_env_settings_to_conf_file
+{
+    # Applies a list of settings to a conf file in a single pass, with the same result as calling
+    # add_env_setting_to_conf on each setting in turn, but without rewriting the file once per setting.
+    # The settings file has one "setting<TAB>value" per line, with backslashes and newlines in the value escaped.
+    local _conf_file=${1}
+    local _settings_file=${2}
+    local _rendered_conf _no_trailing_newline=0 _conf_input=()
+    _rendered_conf="$(mktemp)"
+    if [ -e "${_conf_file}" ]; then
+        _conf_input=("${_conf_file}")
+        # echo >> on a file without a trailing newline continues its last line
+        if [[ -n "$(tail -c 1 "${_conf_file}")" ]]; then
+            _no_trailing_newline=1
+        fi
+    fi
+
+    awk -v conf_file="${_conf_file}" -v rendered_conf="${_rendered_conf}" \
+        -v debug="$(debugging_enabled && echo yes)" -v no_trailing_newline="${_no_trailing_newline}" '
+        function unescape(s,    out, i, c) {
+            out = ""
+            for (i = 1; i <= length(s); i++) {
+                c = substr(s, i, 1)
+                if (c == "\\") {
+                    i++
+                    c = substr(s, i, 1)
+                    if (c == "n") c = "\n"
+                }
+                out = out c
+            }
+            return out
+        }
+        FILENAME == ARGV[1] { settings[++num_settings] = $0; next }
+        { lines[++num_lines] = $0 }
+        END {
+            for (s = 1; s <= num_settings; s++) {
+                tab = index(settings[s], "\t")
+                setting = substr(settings[s], 1, tab - 1)
+                value = unescape(substr(settings[s], tab + 1))
+
+                # same as: grep -q -F "${_setting}=" "${_conf_file}"
+                found = 0
+                for (l = 1; l <= num_lines; l++) {
+                    if (index(lines[l], setting "=")) { found = 1; break }
+                }
+                if (found) {
+                    if (setting == "server.jvm.additional") {
+                        if (debug) print setting " will be appended to " conf_file " without replacing existing settings."
+                    } else {
+                        # same as: sed --in-place "/^${_setting}=.*/d" "${_conf_file}"
+                        if (debug) print "Removing existing setting for " setting " in " conf_file
+                        kept = 0
+                        for (l = 1; l <= num_lines; l++) {
+                            if (lines[l] !~ ("^" setting "=")) {
+                                lines[++kept] = lines[l]
+                            } else if (l == num_lines) {
+                                no_trailing_newline = 0
+                            }
+                        }
+                        num_lines = kept
+                    }
+                }
+
+                # same as: echo "${_setting}=${_value}" >> "${_conf_file}"
+                num_parts = split(setting "=" value, parts, "\n")
+                first = 1
+                if (no_trailing_newline && num_lines > 0) {
+                    lines[num_lines] = lines[num_lines] parts[1]
+                    first = 2
+                }
+                for (p = first; p <= num_parts; p++) lines[++num_lines] = parts[p]
+                no_trailing_newline = 0
+                if (debug) print "Appended " setting "=" value " to " conf_file
+            }
+            for (l = 1; l <= num_lines; l++) print lines[l] > rendered_conf
+            close(rendered_conf)
+        }' "${_settings_file}" "${_conf_input[@]}"
+
+    # write over the existing file, so that it keeps its owner and permissions
+    cat "${_rendered_conf}" > "${_conf_file}"
+    rm "${_rendered_conf}"
+}
+
+function apply_env_settings_to_conf
+{
+    # list env variables with prefix NEO4J_ and create settings from them.
+    # Settings are collected per conf file first, so that each conf file is only rewritten once.
+    # They are also recorded in the env or secrets fragment, which only the precedence report reads.
+    local _neo4j_settings _apoc_settings
+    _neo4j_settings="$(mktemp)"
+    _apoc_settings="$(mktemp)"
+    local _var _setting _value _fragment
+    for _var in $(compgen -v NEO4J_ | sort -rn); do
+        if containsElement "${_var}" "${not_configs[@]}"; then
+            continue
+        fi
+        # Skip env variables with suffix _FILE, these are docker secrets
+        if [[ "${_var}" == *"_FILE" ]]; then
+            continue
+        fi
+
+        # NEO4J_server_tx__log_rotation_retention__policy -> server.tx_log.rotation.retention_policy
+        _setting="${_var#NEO4J_}"
+        _setting="${_setting//_/.}"
+        _setting="${_setting//../_}"
+        # values used to be read with $(echo "${!_var}"), which drops trailing newlines and treats -n, -e and -E as options
+        _value="${!_var}"
+        if [[ "${_value}" =~ ^-[neE]+$ ]]; then
+            _value=""
+        fi
+        while [[ "${_value}" == *$'\n' ]]; do
+            _value="${_value%$'\n'}"
+        done
+
+        # Don't allow settings with no value or settings that start with a number (neo4j converts settings to env variables and you cannot have an env variable that starts with a number)
+        if [[ -z "${_value}" ]]; then
+            continue
+        fi
+        if [[ "${_setting}" =~ ^[0-9]+.*$ ]]; then
+            echo >&2 "WARNING: ${_setting} not written to conf file. Settings that start with a number are not permitted."
+            continue
+        fi
+
+        _value="${_value//\\/\\\\}"
+        _value="${_value//$'\n'/\\n}"
+        _fragment="${conf_fragments_dir}/40-env.settings"
+        if containsElement "${_var}" "${secret_variables[@]}"; then
+            _fragment="${conf_fragments_dir}/50-secrets.settings"
+        fi
+        printf '%s\t%s\n' "${_setting}" "${_value}" >> "${_fragment}"
+        # different settings need to go in different files now.
+        case "${_setting%%.*}" in
+            apoc)
+                printf '%s\t%s\n' "${_setting}" "${_value}" >> "${_apoc_settings}"
+            ;;
+            *)
+                printf '%s\t%s\n' "${_setting}" "${_value}" >> "${_neo4j_settings}"
+            ;;
+        esac
+    done
+
+    if [[ -s "${_neo4j_settings}" ]]; then
+        write_env_settings_to_conf_file "${NEO4J_HOME}"/conf/neo4j.conf "${_neo4j_settings}"
+    fi
+    if [[ -s "${_apoc_settings}" ]]; then
+        write_env_settings_to_conf_file "${NEO4J_HOME}"/conf/apoc.conf "${_apoc_settings}"
+    fi
+    rm "${_neo4j_settings}" "${_apoc_settings}"
+}
+
+function start_conf_fragments
+{
+    # The configuration is built up from layers, from lowest to highest precedence:
+    #   10-docker-defaults  defaults for running in docker, only used if the conf files do not already set them
+    #   20-conf             the conf files mounted to /conf, or the ones that come with neo4j
+    #   30-plugins          properties required by NEO4J_PLUGINS
+    #   40-env              NEO4J_* environment variables
+    #   50-secrets          NEO4J_*_FILE docker secrets
+    # Each layer is recorded in ${conf_fragments_dir} as "setting<TAB>value" lines and is merged into the conf files in one go.
+    # The 20-conf layer only records setting names, because it is the conf file everything else is merged into.
+    rm -rf "${conf_fragments_dir}"
+    mkdir -p "${conf_fragments_dir}"
+    local _conf_file
+    for _conf_file in "${NEO4J_HOME}"/conf/neo4j.conf "${NEO4J_HOME}"/conf/apoc.conf; do
+        if [ -f "${_conf_file}" ]; then
+            awk '/^[^#]/ && index($0, "=") { print substr($0, 1, index($0, "=") - 1) "\t" }' "${_conf_file}" \
+                >> "${conf_fragments_dir}/20-conf.settings"
+        fi
+    done
 }
 
 function add_docker_default_to_conf
 {
-    # docker defaults should NOT overwrite values already in the conf file
-    local _setting="${1}"
-    local _value="${2}"
+    # docker defaults should NOT overwrite values already in the conf file.
+    # They are collected in the docker defaults fragment, and merged into neo4j.conf by merge_docker_defaults.
+    printf '%s\t%s\n' "${1}" "${2}" >> "${conf_fragments_dir}/10-docker-defaults.settings"
+}
 
-    if [ ! -e "${NEO4J_HOME}"/conf/neo4j.conf ] || ! grep -q "^${_setting}=" "${NEO4J_HOME}"/conf/neo4j.conf
-    then
-        debug_msg "Appended ${_setting}=${_value} to ${NEO4J_HOME}/conf/neo4j.conf"
-        echo -e "\n"${_setting}=${_value} >> "${NEO4J_HOME}"/conf/neo4j.conf
+function calculate_memory_split
+{
+    # Splits the given amount of memory in MiB between the heap, the page cache, transaction memory and
+    # memory reserved for the OS and JVM off-heap memory. Prints "<heap> <page cache> <transactions> <reserved>" in MiB.
+    local _total_mb=${1}
+    # a quarter of the memory is left for the OS and JVM off-heap memory, at least 512MiB (or half on tiny containers) and at most 4GiB.
+    local _reserved_mb=$(( _total_mb / 4 ))
+    local _min_reserved_mb=512
+    if [ $(( _total_mb / 2 )) -lt ${_min_reserved_mb} ]; then
+        _min_reserved_mb=$(( _total_mb / 2 ))
+    fi
+    if [ ${_reserved_mb} -lt ${_min_reserved_mb} ]; then
+        _reserved_mb=${_min_reserved_mb}
+    elif [ ${_reserved_mb} -gt 4096 ]; then
+        _reserved_mb=4096
+    fi
+    local _available_mb=$(( _total_mb - _reserved_mb ))
+    # heaps over 31GiB cannot use compressed object pointers, so anything above that goes to the page cache instead.
+    local _heap_mb=$(( _available_mb * 40 / 100 ))
+    if [ ${_heap_mb} -gt 31744 ]; then
+        _heap_mb=31744
+    fi
+    local _transaction_mb=$(( _available_mb * 10 / 100 ))
+    local _pagecache_mb=$(( _available_mb - _heap_mb - _transaction_mb ))
+    echo "${_heap_mb} ${_pagecache_mb} ${_transaction_mb} ${_reserved_mb}"
+}
+
+function add_auto_memory_defaults
+{
+    # Splits the container memory limit using calculate_memory_split, and adds the sizes as docker defaults,
+    # so any memory settings the user has set still take precedence.
+    # Returns 1 if the container has no memory limit.
+    local _limit_bytes
+    _limit_bytes="$(container_memory_limit)"
+    if [ -z "${_limit_bytes}" ]; then
+        echo >&2 "WARNING: NEO4J_AUTO_MEMORY is enabled but the container has no memory limit, so memory will not be sized automatically."
+        return 1
+    fi
+
+    local _total_mb=$(( _limit_bytes / 1048576 ))
+    local _heap_mb _pagecache_mb _transaction_mb _reserved_mb
+    read -r _heap_mb _pagecache_mb _transaction_mb _reserved_mb <<< "$(calculate_memory_split ${_total_mb})"
+
+    echo "Sizing memory automatically for a container memory limit of ${_total_mb}MiB: heap ${_heap_mb}MiB, page cache ${_pagecache_mb}MiB, transactions ${_transaction_mb}MiB, reserved for the OS and JVM ${_reserved_mb}MiB."
+    add_docker_default_to_conf "server.memory.heap.initial_size" "${_heap_mb}m"
+    add_docker_default_to_conf "server.memory.heap.max_size" "${_heap_mb}m"
+    add_docker_default_to_conf "server.memory.pagecache.size" "${_pagecache_mb}m"
+    add_docker_default_to_conf "dbms.memory.transaction.total.max" "${_transaction_mb}m"
+}
+
+function memory_setting_mib
+{
+    # Prints the value of a memory setting in neo4j.conf in MiB, or nothing if it is not set or is not a plain size.
+    # The setting can be given under several names (e.g. the 5.x name and the 4.x name), and the last one set is used.
+    awk -v names="$*" '
+        BEGIN { split(names, n, " "); for (i in n) wanted[n[i]] = 1 }
+        /^[^#]/ && index($0, "=") {
+            setting = substr($0, 1, index($0, "=") - 1)
+            if (setting in wanted) value = substr($0, index($0, "=") + 1)
+        }
+        END {
+            value = tolower(value)
+            gsub(/[ \t]/, "", value)
+            if (!match(value, /^[0-9]+(\.[0-9]+)?/)) exit
+            number = substr(value, 1, RLENGTH)
+            unit = substr(value, RLENGTH + 1)
+            if (unit == "" || unit == "b") factor = 1 / 1048576
+            else if (unit ~ /^k(i?b)?$/) factor = 1 / 1024
+            else if (unit ~ /^m(i?b)?$/) factor = 1
+            else if (unit ~ /^g(i?b)?$/) factor = 1024
+            else if (unit ~ /^t(i?b)?$/) factor = 1048576
+            else exit
+            printf "%d\n", number * factor
+        }' "${NEO4J_HOME}"/conf/neo4j.conf
+}
+
+function check_memory_budget
+{
+    # Compares the memory neo4j is configured to use with the container memory limit, so that a container that would
+    # be OOM killed under load fails (or warns) at startup instead.
+    # NEO4J_MEMORY_CHECK=warn (default) prints a warning, strict refuses to start and off skips the check.
+    local _mode="${NEO4J_MEMORY_CHECK:-warn}"
+    case "${_mode}" in
+        warn|strict) ;;
+        off) return 0 ;;
+        *)
+            echo >&2 "Invalid value for NEO4J_MEMORY_CHECK: '${_mode}'. It must be warn, strict or off."
+            exit 1
+        ;;
+    esac
+    local _limit_bytes
+    _limit_bytes="$(container_memory_limit)"
+    if [ -z "${_limit_bytes}" ] || [ ! -f "${NEO4J_HOME}"/conf/neo4j.conf ]; then
+        return 0
+    fi
+    local _limit_mb=$(( _limit_bytes / 1048576 ))
+
+    local _heap_mb _heap_source="server.memory.heap.max_size"
+    _heap_mb="$(memory_setting_mib server.memory.heap.max_size dbms.memory.heap.max_size)"
+    if [ -z "${_heap_mb}" ]; then
+        # the JVM defaults to a maximum heap of a quarter of the container memory
+        _heap_mb=$(( _limit_mb / 4 ))
+        _heap_source="JVM default"
+    fi
+    local _pagecache_mb _transaction_mb
+    _pagecache_mb="$(memory_setting_mib server.memory.pagecache.size dbms.memory.pagecache.size)"
+    _transaction_mb="$(memory_setting_mib dbms.memory.transaction.total.max dbms.memory.transaction.global_max_size)"
+    local _total_mb=$(( _heap_mb + ${_pagecache_mb:-0} + ${_transaction_mb:-0} ))
+    debug_msg "Memory budget: heap ${_heap_mb}MiB + page cache ${_pagecache_mb:-0}MiB + transactions ${_transaction_mb:-0}MiB = ${_total_mb}MiB, container limit ${_limit_mb}MiB"
+    if [ ${_total_mb} -le ${_limit_mb} ]; then
+        return 0
+    fi
+
+    local _split_heap_mb _split_pagecache_mb _split_transaction_mb _split_reserved_mb
+    read -r _split_heap_mb _split_pagecache_mb _split_transaction_mb _split_reserved_mb <<< "$(calculate_memory_split ${_limit_mb})"
+    local _level="WARNING"
+    if [ "${_mode}" == "strict" ]; then
+        _level="ERROR"
+    fi
+    echo >&2 "${_level}: Neo4j is configured to use more memory than the container memory limit of ${_limit_mb}MiB:
+  heap (${_heap_source}): ${_heap_mb}MiB
+  page cache (server.memory.pagecache.size): ${_pagecache_mb:-0}MiB
+  transactions (dbms.memory.transaction.total.max): ${_transaction_mb:-0}MiB
+  total: ${_total_mb}MiB
+The kernel is likely to kill Neo4j when it runs out of memory under load.
+A split that fits the container memory limit, leaving ${_split_reserved_mb}MiB for the OS and JVM, is:
+  server.memory.heap.max_size=${_split_heap_mb}m
+  server.memory.pagecache.size=${_split_pagecache_mb}m
+  dbms.memory.transaction.total.max=${_split_transaction_mb}m
+You can remove your memory settings and set NEO4J_AUTO_MEMORY=true to use this split, or set NEO4J_MEMORY_CHECK=off to disable this check."
+    if [ "${_mode}" == "strict" ]; then
+        exit 1
+    fi
+}
+
+function add_auto_cpu_defaults
+{
+    # Sizes neo4j's thread pools from the container CPU quota instead of the host's CPU count.
+    # These are docker defaults, so any thread pool settings the user has set still take precedence.
+    local _cpus
+    _cpus="$(container_cpu_count)"
+    echo "Sizing thread pools automatically for ${_cpus} CPUs."
+    add_docker_default_to_conf "server.bolt.thread_pool_max_size" "$(( _cpus * 25 ))"
+    if [ "${NEO4J_EDITION}" == "enterprise" ]; then
+        add_docker_default_to_conf "server.cypher.parallel.worker_limit" "${_cpus}"
+    fi
+}
+
+function add_auto_cpu_jvm_options
+{
+    # The JVM sizes GC and other internal thread pools from the number of processors it sees,
+    # which can be the host's CPU count when the container has a fractional CPU quota.
+    local _cpus
+    _cpus="$(container_cpu_count)"
+    add_jvm_option_to_conf "-XX:ActiveProcessorCount=${_cpus}"
+    add_jvm_option_to_conf "-XX:ParallelGCThreads=${_cpus}"
+    # G1 and ZGC use a quarter of the parallel GC threads for concurrent work by default.
+    add_jvm_option_to_conf "-XX:ConcGCThreads=$(( (_cpus + 3) / 4 ))"
+}
+
+function apply_gc_profile
+{
+    # NEO4J_GC_PROFILE selects a garbage collector and tunes it for the given kind of workload:
+    #   low-latency  generational ZGC, for short pauses whatever the heap size
+    #   balanced     G1 with a shorter pause time goal
+    #   throughput   the parallel collector, for batch loads where pauses do not matter
+    # The preset replaces the -XX:+UseG1GC that neo4j.conf ships with, and other JVM options that the user has set
+    # are kept. If the environment or the conf file selects any other garbage collector, the preset is not used.
+    local _profile="${1}"
+    local _gc_options=()
+    case "${_profile}" in
+        low-latency)
+            _gc_options=("-XX:+UseZGC")
+            # ZGC is only generational by default from JDK 23
+            local _java_version
+            _java_version="$(java_major_version)"
+            if [ -n "${_java_version}" ] && [ "${_java_version}" -lt 23 ]; then
+                _gc_options+=("-XX:+ZGenerational")
+            fi
+        ;;
+        balanced)
+            _gc_options=("-XX:+UseG1GC" "-XX:MaxGCPauseMillis=100" "-XX:+ParallelRefProcEnabled")
+        ;;
+        throughput)
+            _gc_options=("-XX:+UseParallelGC")
+        ;;
+        *)
+            echo >&2 "Invalid value for NEO4J_GC_PROFILE: '${_profile}'. It must be low-latency, balanced or throughput."
+            exit 1
+        ;;
+    esac
+
+    if [[ "${NEO4J_server_jvm_additional:-}" =~ -XX:\+Use[A-Za-z0-9]+GC ]]; then
+        echo >&2 "WARNING: NEO4J_GC_PROFILE=${_profile} is not used, because ${BASH_REMATCH[0]} has been set in NEO4J_server_jvm_additional."
+        return 0
+    fi
+    local _conf_gc
+    _conf_gc="$(grep -o '^server\.jvm\.additional=-XX:+Use[A-Za-z0-9]*GC$' "${NEO4J_HOME}"/conf/neo4j.conf \
+        | grep -v --line-regexp --fixed-strings 'server.jvm.additional=-XX:+UseG1GC' | head -n 1 || true)"
+    if [ -n "${_conf_gc}" ]; then
+        echo >&2 "WARNING: NEO4J_GC_PROFILE=${_profile} is not used, because ${_conf_gc#server.jvm.additional=} has been set in neo4j.conf."
+        return 0
+    fi
+
+    echo "Using the ${_profile} garbage collection profile: ${_gc_options[*]}"
+    remove_setting_from_conf "server.jvm.additional=-XX:+UseG1GC"
+    local _option
+    for _option in "${_gc_options[@]}"; do
+        add_jvm_option_to_conf "${_option}"
+    done
+}
+
+function apply_low_memory_footprint
+{
+    # NEO4J_MEMORY_FOOTPRINT=low reduces the JVM's own memory use, for hosts running many small neo4j containers.
+    # Compact object headers need JDK 25, so on older JDKs only the other options are used.
+    local _java_version
+    _java_version="$(java_major_version)"
+    if [ -n "${_java_version}" ] && [ "${_java_version}" -ge 25 ]; then
+        add_jvm_option_to_conf "-XX:+UseCompactObjectHeaders"
+    else
+        echo >&2 "WARNING: NEO4J_MEMORY_FOOTPRINT=low cannot use compact object headers, because they need Java 25 or later."
+    fi
+    add_jvm_option_to_conf "-XX:+UseStringDeduplication"
+    add_jvm_option_to_conf "-XX:ReservedCodeCacheSize=128m"
+    add_jvm_option_to_conf "-XX:MaxMetaspaceSize=384m"
+    add_jvm_option_to_conf "-XX:ThreadStackSize=512" "-Xss"
+}
+
+function apply_large_pages
+{
+    # NEO4J_LARGE_PAGES=auto backs the heap with transparent huge pages if the host allows it, and pre-touches it,
+    # so that large heaps spend less time on page faults and TLB misses once neo4j is running.
+    # Pre-touching makes startup slower and makes the whole heap count towards RSS from the start.
+    # Hosts without transparent huge pages only get a warning, since neo4j works fine without them.
+    # neo4j.conf ships with -XX:+AlwaysPreTouch, so if the user has turned pre-touch off that line is removed
+    # rather than leaving both in the conf file.
+    local _thp_mode _conf_file="${NEO4J_HOME}"/conf/neo4j.conf
+    _thp_mode="$(transparent_huge_pages_mode)"
+    case "${_thp_mode}" in
+        always|madvise)
+            echo "Transparent huge pages are enabled (${_thp_mode}). Using them for the JVM heap and pre-touching it at startup."
+            add_jvm_option_to_conf "-XX:+UseTransparentHugePages"
+            if grep -q --line-regexp --fixed-strings "server.jvm.additional=-XX:-AlwaysPreTouch" "${_conf_file}"; then
+                debug_msg "Pre-touch has been turned off with -XX:-AlwaysPreTouch in ${_conf_file}"
+                remove_setting_from_conf "server.jvm.additional=-XX:+AlwaysPreTouch"
+            fi
+            add_jvm_option_to_conf "-XX:+AlwaysPreTouch"
+        ;;
+        *)
+            echo >&2 "WARNING: NEO4J_LARGE_PAGES=auto does not use large pages, because transparent huge pages are ${_thp_mode:-not available} on this host."
+        ;;
+    esac
+}
+
+function jfr_folder
+{
+    # Continuous JFR recordings go to /metrics when it is mounted, and otherwise to /logs.
+    if [ -d /metrics ]; then
+        echo "/metrics/jfr"
+    else
+        echo "/logs/jfr"
+    fi
+}
+
+function prepare_jfr_folder
+{
+    # Makes sure the folder for the continuous JFR recording exists and that neo4j can write to it.
+    local _jfr_dir
+    _jfr_dir="$(jfr_folder)"
+    local _parent_dir="${_jfr_dir%/*}"
+    # The main flow has already checked that enterprise edition can write to /metrics, because it writes metrics there.
+    # Community edition does not use /metrics otherwise, so it is only checked here.
+    if [ "${_parent_dir}" == "/metrics" ] && [ "${NEO4J_EDITION}" != "enterprise" ]; then
+        check_mounted_folder_writable_with_chown "/metrics"
+    fi
+    create_folder_writable_by_neo4j "${_jfr_dir}"
+}
+
+function create_folder_writable_by_neo4j
+{
+    # Creates a folder, usually inside a mounted folder, as the user that neo4j runs as, and fails if neo4j cannot write to it.
+    local _folder=${1}
+    local _as_neo4j=()
+    if running_as_root; then
+        _as_neo4j=(su-exec "${userid}":"${groupid}")
+    fi
+    if ! "${_as_neo4j[@]}" mkdir -p "${_folder}" || ! "${_as_neo4j[@]}" test -w "${_folder}"; then
+        print_permissions_advice_and_fail "${_folder}" "${userid}" "${groupid}"
+    fi
+}
+
+function add_jfr_options
+{
+    # NEO4J_JFR=continuous keeps a Java Flight Recorder recording running all the time, with the low overhead default
+    # settings. Its repository is on the mounted folder and is bounded in size and age, so there is always recent data
+    # from before an incident to look at. neo4j-jfr-dump saves the recording on demand, and it is also saved when neo4j stops.
+    local _jfr_dir _conf_file="${NEO4J_HOME}"/conf/neo4j.conf _recorder_options
+    _jfr_dir="$(jfr_folder)"
+    echo "Recording continuously with Java Flight Recorder into ${_jfr_dir}."
+    add_jvm_option_to_conf "-XX:StartFlightRecording=name=continuous,settings=default,disk=true,maxsize=${NEO4J_JFR_MAX_SIZE:-256m},maxage=${NEO4J_JFR_MAX_AGE:-6h},dumponexit=true,filename=${_jfr_dir}/neo4j-exit.jfr"
+
+    # neo4j.conf already sets -XX:FlightRecorderOptions=stackdepth=256, and the JVM only uses the last
+    # -XX:FlightRecorderOptions it is given, so the repository is added to the options that are already set.
+    _recorder_options="$(grep '^server\.jvm\.additional=-XX:FlightRecorderOptions=' "${_conf_file}" | tail -n 1 || true)"
+    _recorder_options="${_recorder_options#server.jvm.additional=-XX:FlightRecorderOptions=}"
+    if [ -z "${_recorder_options}" ]; then
+        add_jvm_option_to_conf "-XX:FlightRecorderOptions=repository=${_jfr_dir}/repository"
+    elif [[ ",${_recorder_options}" == *",repository="* ]]; then
+        debug_msg "Not setting the JFR repository because it is already set in ${_conf_file}"
+    else
+        debug_msg "Adding repository=${_jfr_dir}/repository to -XX:FlightRecorderOptions=${_recorder_options} in ${_conf_file}"
+        local _line
+        while read -r _line; do
+            remove_setting_from_conf "${_line}"
+        done < <(grep '^server\.jvm\.additional=-XX:FlightRecorderOptions=' "${_conf_file}")
+        add_jvm_option_to_conf "-XX:FlightRecorderOptions=${_recorder_options},repository=${_jfr_dir}/repository"
+    fi
+}
+
+function add_gc_logging_options
+{
+    # NEO4J_GC_LOGGING=on writes unified JVM GC logging to /logs/gc, with the time, uptime, level and tags on every line.
+    # The JVM rotates the log, keeping server.logs.gc.rotation.keep_number files of up to server.logs.gc.rotation.size,
+    # the same settings that neo4j's own GC logging uses. GC logging that is already configured takes precedence.
+    local _conf_file="${NEO4J_HOME}"/conf/neo4j.conf
+    if grep --quiet --extended-regexp '^(server\.logs\.gc\.enabled=true|server\.jvm\.additional=-Xlog:(gc|safepoint))' "${_conf_file}"; then
+        echo >&2 "WARNING: NEO4J_GC_LOGGING=on is ignored, because GC logging is already configured in ${_conf_file}."
+        return 0
+    fi
+    local _keep _size_mb
+    _keep="$(sed -n 's/^server\.logs\.gc\.rotation\.keep_number=\([0-9][0-9]*\)$/\1/p' "${_conf_file}" | tail -n 1)"
+    _size_mb="$(memory_setting_mib server.logs.gc.rotation.size)"
+    if [ "${_size_mb:-0}" -lt 1 ]; then
+        _size_mb=20
+    fi
+    echo "Logging garbage collection to ${gc_log_dir}."
+    add_jvm_option_to_conf "-Xlog:gc*,safepoint:file=${gc_log_dir}/gc.log:time,uptime,level,tags:filecount=${_keep:-5},filesize=${_size_mb}m"
+}
+
+function gc_log_summary
+{
+    # Prints the number of GC pauses with their median, 99th percentile and longest time, and the average allocation
+    # rate, from the GC log in ${gc_log_dir}. Rotated files are read oldest first, and when the uptime goes backwards
+    # a new JVM has started, so only the last run of neo4j is summarised.
+    local _files
+    mapfile -t _files < <(ls -1tr "${gc_log_dir}"/gc.log* 2>/dev/null)
+    if [ ${#_files[@]} -eq 0 ]; then
+        return 0
+    fi
+    cat "${_files[@]}" | awk '
+        function mib(size) {
+            value = substr(size, 1, length(size) - 1)
+            unit = substr(size, length(size))
+            return unit == "K" ? value / 1024 : unit == "G" ? value * 1024 : value
+        }
+        match($0, /^\[[^]]*\]\[[0-9.]+s\]/) {
+            line_uptime = substr($0, RSTART, RLENGTH)
+            sub(/^\[[^]]*\]\[/, "", line_uptime)
+            line_uptime = line_uptime + 0
+            if (line_uptime < uptime) { pauses = 0; allocated = 0; after = 0 }
+            uptime = line_uptime
+        }
+        / Pause / && match($0, /[0-9.]+ms$/) { pause[++pauses] = substr($0, RSTART, RLENGTH - 2) }
+        /\]\[gc *\] / && match($0, /[0-9]+[KMG](\([0-9]+%\))?->[0-9]+[KMG]/) {
+            transition = substr($0, RSTART, RLENGTH)
+            split(transition, sizes, "->")
+            sub(/\(.*/, "", sizes[1])
+            sub(/\(.*/, "", sizes[2])
+            if (mib(sizes[1]) > after) allocated += mib(sizes[1]) - after
+            after = mib(sizes[2])
+        }
+        END {
+            for (i = 1; i <= pauses; i++) print "pause", pause[i]
+            print "total", pauses, allocated, uptime
+        }' | sort -k1,1 -k2,2n | awk '
+        function percentile(p) {
+            rank = int(p * pauses)
+            if (rank < p * pauses) rank++
+            return rank < 1 ? 0 : pause[rank]
+        }
+        $1 == "pause" { pause[++pauses] = $2 }
+        $1 == "total" { allocated = $3; uptime = $4 }
+        END {
+            if (uptime <= 0) exit
+            printf "GC summary: %d pauses, p50 %.1fms, p99 %.1fms, max %.1fms, allocation rate %.1fMiB/s over %ds.\n",
+                pauses, percentile(0.5), percentile(0.99), pauses ? pause[pauses] : 0, allocated / uptime, uptime
+        }'
+}
+
+function run_neo4j_and_print_gc_summary
+{
+    # With NEO4J_GC_LOGGING=on neo4j runs as a child of this script instead of replacing it, so that there is something
+    # left to summarise the GC log when neo4j stops. Stop signals are passed on to neo4j so that it still shuts down cleanly.
+    local _neo4j_pid _status
+    eval ${exec_cmd#exec} "$@" '&'
+    _neo4j_pid=$!
+    trap "kill -TERM ${_neo4j_pid} 2>/dev/null" TERM INT
+    while true; do
+        _status=0
+        wait ${_neo4j_pid} || _status=$?
+        if ! kill -0 ${_neo4j_pid} 2>/dev/null; then
+            break
+        fi
+    done
+    trap - TERM INT
+    gc_log_summary || true
+    exit ${_status}
+}
+
+function configure_heap_dumps
+{
+    # NEO4J_HEAP_DUMP_ON_OOM=true makes the JVM write a heap dump to NEO4J_HEAP_DUMP_PATH (default /logs/heap-dumps)
+    # when it runs out of heap. A heap dump can be as big as the heap, so the flags are only set if the folder is on
+    # a mounted volume with enough free space for the maximum heap. Otherwise there is a warning, so that a dump cannot
+    # fill the container's own file system, or a volume that neo4j needs to keep running.
+    # This runs on every start, after the config has been rendered or reused, because free space changes over time.
+    # It also runs after the mounted /data and /logs folders have been checked, so that the dump folder is only
+    # created once neo4j is known to be able to write to them.
+    local _dump_dir="${NEO4J_HEAP_DUMP_PATH:-/logs/heap-dumps}"
+    local _keep="${NEO4J_HEAP_DUMP_KEEP:-2}"
+    local _conf_file="${NEO4J_HOME}"/conf/neo4j.conf
+    if [[ ! "${_keep}" =~ ^[0-9]+$ ]]; then
+        echo >&2 "Invalid value for NEO4J_HEAP_DUMP_KEEP: '${_keep}'. It must be a number of heap dumps to keep."
+        exit 1
+    fi
+    # the flags are worked out again from scratch, because there may be less free space than on the last start.
+    # Only the options that were added here last time are removed, so heap dump options set by the user are never touched.
+    # They are kept apart from the other added settings, because they are removed even when the config is reused.
+    remove_added_settings "${heap_dump_options_file}"
+    # a server.jvm.additional value from the environment can have more options on the lines after it.
+    if grep -q -E '^(server\.jvm\.additional=)?-XX:([+-]HeapDumpOnOutOfMemoryError|HeapDumpPath=)' "${_conf_file}"; then
+        echo >&2 "WARNING: NEO4J_HEAP_DUMP_ON_OOM is not used, because heap dump options have already been set in server.jvm.additional."
+        return 0
+    fi
+
+    # check that the folder is on a mounted volume before creating it, so that nothing is left in the container otherwise.
+    local _existing_dir="${_dump_dir}" _mount_point
+    while [ ! -d "${_existing_dir}" ]; do
+        _existing_dir="$(dirname "${_existing_dir}")"
+    done
+    _mount_point="$(df -P "${_existing_dir}" | awk 'NR == 2 {print $6}')"
+    if [ "${_mount_point}" == "/" ]; then
+        echo >&2 "WARNING: Heap dumps are not turned on, because ${_dump_dir} is not on a mounted volume. Mount a volume to ${_dump_dir} or set NEO4J_HEAP_DUMP_PATH to a folder on one."
+        return 0
+    fi
+    create_folder_writable_by_neo4j "${_dump_dir}"
+
+    # The JVM names dumps after its PID, which is often the same in every container start, and will not overwrite
+    # an existing dump. So dumps from earlier starts are renamed after the time they were written, and the oldest removed.
+    local _dump _dumps
+    for _dump in "${_dump_dir}"/java_pid*.hprof; do
+        if [ -f "${_dump}" ]; then
+            mv "${_dump}" "${_dump_dir}/heap-dump-$(date -u -r "${_dump}" +%Y%m%dT%H%M%SZ)-${_dump##*/java_}"
+        fi
+    done
+    mapfile -t _dumps < <(ls -1t "${_dump_dir}"/heap-dump-*.hprof 2>/dev/null | tail -n +$(( _keep + 1 )))
+    for _dump in "${_dumps[@]}"; do
+        echo "Removing old heap dump ${_dump}, NEO4J_HEAP_DUMP_KEEP is ${_keep}."
+        rm -f "${_dump}"
+    done
+
+    local _heap_mb _free_mb
+    _heap_mb="$(memory_setting_mib server.memory.heap.max_size dbms.memory.heap.max_size)"
+    if [ -z "${_heap_mb}" ]; then
+        # the JVM defaults to a maximum heap of a quarter of the container memory, or of the host memory
+        local _memory_bytes
+        _memory_bytes="$(container_memory_limit)"
+        : ${_memory_bytes:=$(( $(awk '/^MemTotal:/ {print $2}' /proc/meminfo) * 1024 ))}
+        _heap_mb=$(( _memory_bytes / 4 / 1048576 ))
+    fi
+    _free_mb=$(( $(df -P -k "${_dump_dir}" | awk 'NR == 2 {print $4}') / 1024 ))
+    if [ ${_free_mb} -lt ${_heap_mb} ]; then
+        echo >&2 "WARNING: Heap dumps are not turned on, because ${_dump_dir} has ${_free_mb}MiB free and a heap dump can be up to the maximum heap size of ${_heap_mb}MiB."
+        return 0
+    fi
+    debug_msg "Heap dumps on OutOfMemoryError go to ${_dump_dir}, which has ${_free_mb}MiB free for a heap of up to ${_heap_mb}MiB"
+    printf '%s\n' "server.jvm.additional=-XX:+HeapDumpOnOutOfMemoryError" "server.jvm.additional=-XX:HeapDumpPath=${_dump_dir}" \
+        > "${heap_dump_options_file}"
+    append_settings_to_conf "${heap_dump_options_file}"
+}
+
+function add_jvm_cache_options
+{
+    # Uses the class data cache that was made for the server when the image was built, see jvm_cache_options.
+    # Class sharing options that the user has already set take precedence.
+    local _conf_file="${NEO4J_HOME}"/conf/neo4j.conf
+    if grep --quiet --extended-regexp '^server\.jvm\.additional=.*(-Xshare|AOTCache|SharedArchiveFile)' "${_conf_file}"; then
+        debug_msg "Not using the JVM class data cache from the image because class sharing is configured in ${_conf_file}"
+        return 0
+    fi
+    local _options _option
+    read -r -a _options <<< "$(jvm_cache_options neo4j)"
+    for _option in "${_options[@]}"; do
+        add_jvm_option_to_conf "${_option}"
+    done
+}
+
+function add_jvm_option_to_conf
+{
+    # Appends a JVM option to server.jvm.additional, unless the option is already set there with any value.
+    # e.g. -XX:ParallelGCThreads=2 is not added if there is any -XX:ParallelGCThreads=, and -XX:+UseZGC is not
+    # added if there is -XX:+UseZGC or -XX:-UseZGC. This must run after the environment settings have been applied.
+    # An optional second argument is the prefix of another option that sets the same thing, e.g. -Xss for -XX:ThreadStackSize.
+    # Added options are recorded, so that they are worked out again instead of counting as set the next time the config is rendered.
+    local _option="${1}"
+    local _alias_prefix="${2:-}"
+    local _conf_file="${NEO4J_HOME}"/conf/neo4j.conf
+    local _option_name="${_option%%=*}"
+    _option_name="${_option_name/#-XX:[+-]/-XX:}"
+    if [ -e "${_conf_file}" ] && awk -v name="${_option_name}" -v alias_prefix="${_alias_prefix}" '
+            /^server\.jvm\.additional=/ {
+                option = substr($0, length("server.jvm.additional=") + 1)
+                if (alias_prefix != "" && index(option, alias_prefix) == 1) found = 1
+                sub(/=.*/, "", option)
+                sub(/^-XX:[+-]/, "-XX:", option)
+                if (option == name) found = 1
+            }
+            END { exit !found }' "${_conf_file}"; then
+        debug_msg "Not adding JVM option ${_option} because ${_option_name} is already set in ${_conf_file}"
+        return 0
+    fi
+    debug_msg "Appended server.jvm.additional=${_option} to ${_conf_file}"
+    if [ -s "${_conf_file}" ] && [[ -n "$(tail -c 1 "${_conf_file}")" ]]; then
+        echo >> "${_conf_file}"
+    fi
+    echo "server.jvm.additional=${_option}" >> "${_conf_file}"
+    echo "server.jvm.additional=${_option}" >> "${added_settings_file}"
+}
+
+function remove_added_settings
+{
+    # Takes the lines listed in the given file out of neo4j.conf, and removes the file.
+    # The file lists lines that the entrypoint added to neo4j.conf on an earlier start, so settings from the user are never touched.
+    # Settings are added with an empty line before them, so one empty line before each removed line goes as well.
+    local _added_settings=${1}
+    local _conf_file="${NEO4J_HOME}"/conf/neo4j.conf
+    if [ -s "${_added_settings}" ] && [ -f "${_conf_file}" ]; then
+        debug_msg "Removing the settings listed in ${_added_settings} from ${_conf_file}"
+        local _conf_without_settings
+        _conf_without_settings="$(mktemp)"
+        awk 'FILENAME == ARGV[1] { added[$0] = 1; next }
+             $0 == "" { empty_lines++; next }
+             $0 in added { if (empty_lines > 0) empty_lines--; next }
+             { for (; empty_lines > 0; empty_lines--) print ""; print }
+             END { for (; empty_lines > 0; empty_lines--) print "" }' \
+            "${_added_settings}" "${_conf_file}" > "${_conf_without_settings}"
+        # write over the existing file, so that it keeps its owner and permissions
+        cat "${_conf_without_settings}" > "${_conf_file}"
+        rm "${_conf_without_settings}"
+    fi
+    rm -f "${_added_settings}"
+}
+
+function remove_setting_from_conf
+{
+    # Removes a line from neo4j.conf, e.g. a default JVM option that is replaced by another one.
+    # The line is recorded, so that it is put back before neo4j.conf is rendered again, in case it is not replaced then.
+    local _line=${1}
+    local _conf_file="${NEO4J_HOME}"/conf/neo4j.conf
+    if ! grep -q --line-regexp --fixed-strings -e "${_line}" "${_conf_file}"; then
+        return 0
+    fi
+    debug_msg "Removing ${_line} from ${_conf_file}"
+    local _conf_without_line
+    _conf_without_line="$(mktemp)"
+    grep -v --line-regexp --fixed-strings -e "${_line}" "${_conf_file}" > "${_conf_without_line}" || true
+    # write over the existing file, so that it keeps its owner and permissions
+    cat "${_conf_without_line}" > "${_conf_file}"
+    rm "${_conf_without_line}"
+    echo "${_line}" >> "${removed_settings_file}"
+}
+
+function append_settings_to_conf
+{
+    # Appends the lines in the given file to neo4j.conf, starting on a new line.
+    local _settings=${1}
+    local _conf_file="${NEO4J_HOME}"/conf/neo4j.conf
+    if [ -s "${_conf_file}" ] && [[ -n "$(tail -c 1 "${_conf_file}")" ]]; then
+        echo >> "${_conf_file}"
+    fi
+    cat "${_settings}" >> "${_conf_file}"
+}
+
+function restore_removed_settings
+{
+    # Puts back the lines that were removed from neo4j.conf with remove_setting_from_conf the last time it was rendered.
+    if [ -s "${removed_settings_file}" ] && [ -f "${NEO4J_HOME}"/conf/neo4j.conf ]; then
+        debug_msg "Putting the settings listed in ${removed_settings_file} back into ${NEO4J_HOME}/conf/neo4j.conf"
+        append_settings_to_conf "${removed_settings_file}"
+    fi
+    rm -f "${removed_settings_file}"
+}
+
+function merge_docker_defaults
+{
+    local _conf_file="${NEO4J_HOME}"/conf/neo4j.conf
+    local _fragment="${conf_fragments_dir}/10-docker-defaults.settings"
+    local _existing_settings="" _defaults="" _setting _value
+    if [ ! -f "${_fragment}" ]; then
+        return 0
+    fi
+    if [ -e "${_conf_file}" ]; then
+        _existing_settings="$(grep -o "^[^=]*=" "${_conf_file}" || true)"
+    fi
+    while IFS=$'\t' read -r _setting _value; do
+        if grep -q --line-regexp --fixed-strings "${_setting}=" <<< "${_existing_settings}"; then
+            debug_msg "Not using docker default ${_setting}=${_value} because it is already set in ${_conf_file}"
+        else
+            debug_msg "Appended ${_setting}=${_value} to ${_conf_file}"
+            _defaults+=$'\n'"${_setting}=${_value}"$'\n'
+            printf '%s=%s\n' "${_setting}" "${_value}" >> "${added_settings_file}"
+        fi
+    done < "${_fragment}"
+    if [ -n "${_defaults}" ]; then
+        printf '%s' "${_defaults}" >> "${_conf_file}"
+    fi
+}
+
+function write_conf_precedence_report
+{
+    # Lists the layers that set each setting, lowest precedence first, so the last layer listed is the one neo4j uses.
+    # Only setting names are listed, because values may have come from secrets.
+    local _report="${conf_fragments_dir}/precedence.txt"
+    local -A _sources=()
+    local _settings_order=() _fragment _layer _setting _value
+    for _fragment in "${conf_fragments_dir}"/*.settings; do
+        if [ ! -f "${_fragment}" ]; then
+            continue
+        fi
+        _layer="$(basename "${_fragment}" .settings)"
+        _layer="${_layer#*-}"
+        while IFS=$'\t' read -r _setting _value; do
+            if [ -z "${_sources[${_setting}]+set}" ]; then
+                _settings_order+=("${_setting}")
+                _sources[${_setting}]="${_layer}"
+            elif [[ "${_sources[${_setting}]}" != *"${_layer}" ]]; then
+                _sources[${_setting}]+=" < ${_layer}"
+            fi
+        done < "${_fragment}"
+    done
+    {
+        echo "# Configuration layers that set each setting, lowest precedence first."
+        for _setting in "${_settings_order[@]}"; do
+            echo "${_setting}: ${_sources[${_setting}]}"
+        done
+    } > "${_report}"
+    if debugging_enabled; then
+        cat "${_report}"
     fi
 }
 
@@ -300,11 +1477,13 @@ function set_initial_password
 {
     local _neo4j_auth="${1}"
 
-    # set the neo4j initial password only if you run the database server
-    if [ "${cmd}" == "neo4j" ]; then
+    # set the neo4j initial password only if you run the database server.
+    # render-config validates NEO4J_AUTH and sets the same configuration, but does not store the password.
+    if [ "${cmd}" == "neo4j" ] || [ "${cmd}" == "render-config" ]; then
         if [ "${_neo4j_auth:-}" == "none" ]; then
             debug_msg "Authentication is requested to be unset"
             add_env_setting_to_conf "dbms.security.auth_enabled" "false"
+            printf '%s\t%s\n' "dbms.security.auth_enabled" "false" >> "${conf_fragments_dir}/40-env.settings"
         elif [[ "${_neo4j_auth:-}" =~ ^([^/]+)\/([^/]+)/?([tT][rR][uU][eE])?$ ]]; then
             admin_user="${BASH_REMATCH[1]}"
             password="${BASH_REMATCH[2]}"
@@ -329,6 +1508,10 @@ If Neo4j fails to start, you can:
   3) Set environment variable NEO4J_dbms_security_auth__minimum__password__length to override the minimum password length requirement."
             fi
 
+            if [ "${cmd}" == "render-config" ]; then
+                return
+            fi
+
             if running_as_root; then
                 # running set-initial-password as root will create subfolders to /data as root, causing startup fail when neo4j can't read or write the /data/dbms folder
                 # creating the folder first will avoid that
@@ -337,6 +1520,14 @@ If Neo4j fails to start, you can:
                 chown "${userid}":"${groupid}" /data/dbms
             fi
 
+            # neo4j only uses the initial password when it creates the system database, so once that exists,
+            # running set-initial-password (and starting a JVM to do it) would have no effect.
+            # /data/dbms/auth.ini on its own is not enough, because it is only read when the system database is created.
+            if [ -d /data/databases/system ]; then
+                debug_msg "Credentials already exist in /data, skipping set-initial-password"
+                return
+            fi
+
             local extra_args=()
             if [ "${do_reset}" == "true" ]; then
                 extra_args+=("--require-password-change")
@@ -347,9 +1538,16 @@ If Neo4j fails to start, you can:
             if debugging_enabled; then
                 extra_args+=("--verbose")
             fi
-            debug_msg "Setting initial password"
+            debug_msg "Running neo4j-admin dbms set-initial-password"
+            local admin_env=()
+            local admin_java_opts
+            admin_java_opts="$(neo4j_admin_java_opts)"
+            if [ -n "${admin_java_opts}" ]; then
+                admin_env+=("JAVA_OPTS=${admin_java_opts}")
+            fi
             debug_msg "${neo4j_admin_cmd} dbms set-initial-password ***** ${extra_args[*]}"
-            ${neo4j_admin_cmd} dbms set-initial-password "${password}" "${extra_args[@]}"
+            # set-initial-password starts a JVM, so it runs in the background while the neo4j run command is worked out.
+            run_in_background "set-initial-password" env "${admin_env[@]}" ${neo4j_admin_cmd} dbms set-initial-password "${password}" "${extra_args[@]}"
 
         elif [ -n "${_neo4j_auth:-}" ]; then
             echo "$_neo4j_auth is invalid"
@@ -359,8 +1557,49 @@ If Neo4j fails to start, you can:
     fi
 }
 
+function config_env_fingerprint
+{
+    # The environment and command that the rendered config in NEO4J_HOME/conf depends on.
+    # This has to be taken before the entrypoint sets any NEO4J_ variables of its own.
+    {
+        echo "cmd=$* user=${userid}:${groupid} hostname=$(hostname) memory_limit=$(container_memory_limit) cpus=$(container_cpu_count) java=$(java_major_version) thp=$(transparent_huge_pages_mode)"
+        declare -p $(compgen -v NEO4J) EXTENDED_CONF SECURE_FILE_PERMISSIONS 2>/dev/null || true
+        if [[ -n "${NEO4J_AUTH_PATH:-}" ]] && [[ -f "${NEO4J_AUTH_PATH}" ]]; then
+            sha256sum "${NEO4J_AUTH_PATH}"
+        fi
+        find /startup -type f -exec sha256sum {} + | sort
+    } | sha256sum | cut -d' ' -f1
+}
+
+function config_inputs_fingerprint
+{
+    # Combines the environment fingerprint with everything mounted into the container that affects the config.
+    # /plugins is listed rather than hashed, since plugin jars can be large.
+    local _env_fingerprint=${1}
+    {
+        echo "env=${_env_fingerprint}"
+        for _folder in /conf /ssl /plugins /import /metrics /logs /data /licenses; do
+            if [ -d "${_folder}" ]; then
+                echo "mounted ${_folder} $(stat -c %d:%i "${_folder}")"
+            fi
+        done
+        if [ -d /conf ]; then
+            find /conf -type f -exec sha256sum {} + | sort
+        fi
+        if [ -d /plugins ]; then
+            find /plugins -printf '%p %s %T@\n' | sort
+        fi
+    } | sha256sum | cut -d' ' -f1
+}
+
+function rendered_config_checksum
+{
+    find "${NEO4J_HOME}"/conf -type f -exec sha256sum {} + | sort | sha256sum | cut -d' ' -f1
+}
+
 # ==== CODE STARTS ====
 debug_msg "DEBUGGING ENABLED"
+profile_phase "setup"
 
 # If we're running as root, then run as the neo4j user. Otherwise
 # docker is running with --user and we simply use that user.  Note
@@ -387,21 +1626,39 @@ readonly groups
 readonly exec_cmd
 readonly neo4j_admin_cmd
 
+# state that the entrypoint keeps between restarts of the same container
+docker_state_dir="${NEO4J_HOME}/run/docker"
+readonly docker_state_dir
+mkdir -p "${docker_state_dir}"
+conf_fragments_dir="${docker_state_dir}/conf.d"
+readonly conf_fragments_dir
+# the lines that were added to neo4j.conf the last time it was rendered, e.g. the docker defaults and JVM options
+added_settings_file="${docker_state_dir}/added-settings.conf"
+readonly added_settings_file
+# the lines that were removed from neo4j.conf the last time it was rendered, e.g. a default JVM option that was replaced
+removed_settings_file="${docker_state_dir}/removed-settings.conf"
+readonly removed_settings_file
+# the heap dump options that were added to neo4j.conf on the last start, see configure_heap_dumps
+heap_dump_options_file="${docker_state_dir}/heap-dump.options"
+readonly heap_dump_options_file
+
+# render-config can print the configuration to stdout, so any other output from the entrypoint goes to stderr instead.
+if [ "${cmd}" == "render-config" ]; then
+    exec 3>&1 1>&2
+fi
+
 # Need to chown the home directory
 if running_as_root; then
-    debug_msg "chowning ${NEO4J_HOME} recursively to ${userid}":"${groupid}"
-    chown -R "${userid}":"${groupid}" "${NEO4J_HOME}"
-    chmod 700 "${NEO4J_HOME}"
-    find "${NEO4J_HOME}" -mindepth 1 -maxdepth 1 -type d -exec chmod -R 700 {} \;
-    debug_msg "Setting all files in ${NEO4J_HOME}/conf to permissions 600"
-    find "${NEO4J_HOME}"/conf -type f -exec chmod -R 600 {} \;
+    fix_neo4j_home_ownership
 fi
 
 ## == EXTRACT SECRETS FROM FILES ===
+profile_phase "secrets"
 # These environment variables are set by using docker secrets and they override their equivalent env vars
 # They are suffixed with _FILE and prefixed by the name of the env var they should override
 # e.g. NEO4J_AUTH_FILE will override the value of the NEO4J_AUTH
 # It's best to do this first so that the secrets are available for the rest of the script
+secret_variables=()
 for variable_name in $(printenv | awk -F= '{print $1}'); do
   # Check if the variable ends with "_FILE" and starts with "NEO4J_"
   if [[ $variable_name == *"_FILE" &&
@@ -422,10 +1679,12 @@ for variable_name in $(printenv | awk -F= '{print $1}'); do
     fi
     # Assign the value to the new variable
     export "$base_variable_name"="$secret_value"
+    secret_variables+=("${base_variable_name}")
   fi
 done
 
 # ==== CHECK LICENSE AGREEMENT ====
+profile_phase "license"
 
 # Only prompt for license agreement if command contains "neo4j" in it
 if [[ "${cmd}" == *"neo4j"* ]]; then
@@ -473,16 +1732,68 @@ The old name will still work, but is likely to be deprecated in future releases.
     : ${NEO4J_PLUGINS:=${NEO4JLABS_PLUGINS:-}}
 fi
 
-# ==== CHECK FILE PERMISSIONS ON MOUNTED FOLDERS ====
+# ==== CHECK FOR UNCHANGED CONFIGURATION ====
+profile_phase "fingerprint"
+
+# If nothing that goes into the config has changed since the last time neo4j was started in this container,
+# (e.g. after a docker restart) the config rendered last time is reused and the config and password steps are skipped.
+# Extension scripts may change anything, so the config is always rendered from scratch when one is used.
+reuse_rendered_config="no"
+config_fingerprint_file="${docker_state_dir}/config.fingerprint"
+if [ "${cmd}" == "neo4j" ] && [ -z "${EXTENSION_SCRIPT:-}" ]; then
+    env_fingerprint="$(config_env_fingerprint "$@")"
+    if [ -f "${config_fingerprint_file}" ] && \
+       [ "$(< "${config_fingerprint_file}")" == "$(config_inputs_fingerprint "${env_fingerprint}") $(rendered_config_checksum)" ]; then
+        echo "Configuration has not changed since the last start, reusing the configuration in ${NEO4J_HOME}/conf."
+        reuse_rendered_config="yes"
+    fi
+fi
+rm -f "${config_fingerprint_file}"
+
+# ==== START PLUGIN DOWNLOADS ====
+
+# NEO4J_PLUGINS should be a json array of plugins like '["graph-algorithms", "apoc", "streams", "graphql"]'
+# Downloading plugins is network bound, so it happens in the background while the mounted folders are checked.
+# The plugins are installed and configured in the requested order once the downloads have finished.
+if [[ -n "${NEO4J_PLUGINS:-}" ]] && [ "${reuse_rendered_config}" != "yes" ]; then
+    validate_neo4j_plugins
+    if [ "${cmd}" != "render-config" ]; then
+        # Downloaded plugins are kept in /plugin-cache if it is mounted, so that later starts do not need the network.
+        use_plugin_cache="no"
+        if plugin_cache_usable; then
+            use_plugin_cache="yes"
+        fi
+        plugin_download_dir="$(mktemp -d)"
+        run_in_background "plugin-downloads" download_neo4j_plugins "${plugin_download_dir}"
+    fi
+fi
 
+# ==== CHECK FILE PERMISSIONS ON MOUNTED FOLDERS ====
 
+profile_phase "conf-copy"
 if [ -d /conf ]; then
     check_mounted_folder_readable "/conf"
-    rm -rf "${NEO4J_HOME}"/conf/*
-    debug_msg "Copying contents of /conf to ${NEO4J_HOME}/conf/*"
-    find /conf -type f -exec cp --preserve=ownership,mode {} "${NEO4J_HOME}"/conf \;
+    if [ "${reuse_rendered_config}" != "yes" ]; then
+        rm -rf "${NEO4J_HOME}"/conf/*
+        debug_msg "Copying contents of /conf to ${NEO4J_HOME}/conf/*"
+        find /conf -type f -exec cp --preserve=ownership,mode --target-directory="${NEO4J_HOME}"/conf {} +
+    fi
+fi
+if [ "${reuse_rendered_config}" != "yes" ]; then
+    if [ -d /conf ]; then
+        rm -f "${added_settings_file}" "${removed_settings_file}" "${heap_dump_options_file}"
+    else
+        # Without a /conf mount, neo4j.conf is the one rendered on the last start. The settings that were worked out
+        # then, e.g. memory sizes from the container memory limit, are taken out so that they are worked out again,
+        # and the ones they replaced are put back.
+        remove_added_settings "${added_settings_file}"
+        remove_added_settings "${heap_dump_options_file}"
+        restore_removed_settings
+    fi
+    start_conf_fragments
 fi
 
+profile_phase "mount-permissions"
 if [ -d /ssl ]; then
     check_mounted_folder_readable "/ssl"
     rm -rf "${NEO4J_HOME}"/certificates
@@ -520,14 +1831,13 @@ fi
 
 if [ -d /data ]; then
     check_mounted_folder_writable_with_chown "/data"
-    if [ -d /data/databases ]; then
-        check_mounted_folder_writable_with_chown "/data/databases"
-    fi
-    if [ -d /data/dbms ]; then
-        check_mounted_folder_writable_with_chown "/data/dbms"
-    fi
-    if [ -d /data/transactions ]; then
-        check_mounted_folder_writable_with_chown "/data/transactions"
+    # When running as root, the scan of /data already covered everything inside it.
+    if ! running_as_root || secure_mode_enabled; then
+        for _data_subfolder in /data/databases /data/dbms /data/transactions; do
+            if [ -d "${_data_subfolder}" ]; then
+                check_mounted_folder_writable_with_chown "${_data_subfolder}"
+            fi
+        done
     fi
 fi
 
@@ -536,100 +1846,213 @@ if [ -d /licenses ]; then
     : ${NEO4J_server_directories_licenses:="/licenses"}
 fi
 
+if [ "${NEO4J_JFR:-off}" == "continuous" ]; then
+    prepare_jfr_folder
+fi
+
+gc_log_dir="/logs/gc"
+if [ "${NEO4J_GC_LOGGING:-off}" == "on" ]; then
+    create_folder_writable_by_neo4j "${gc_log_dir}"
+fi
+
 
 # ==== LOAD PLUGINS ====
+profile_phase "plugins"
 
-if [[ -n "${NEO4J_PLUGINS:-}" ]]; then
-  # NEO4J_PLUGINS should be a json array of plugins like '["graph-algorithms", "apoc", "streams", "graphql"]'
+if [[ -n "${NEO4J_PLUGINS:-}" ]] && [ "${reuse_rendered_config}" != "yes" ]; then
   install_neo4j_plugins
 fi
 
-# ==== RENAME LEGACY ENVIRONMENT CONF VARIABLES ====
-
-# Env variable naming convention:
-# - prefix NEO4J_
-# - double underscore char '__' instead of single underscore '_' char in the setting name
-# - underscore char '_' instead of dot '.' char in the setting name
-# Example:
-# NEO4J_server_tx__log_rotation_retention__policy env variable to set
-#       server.tx_log.rotation.retention_policy setting
-
-# we only need to override the configurations with a docker specific override.
-# The other config renames will be taken care of inside Neo4j.
-: ${NEO4J_db_tx__log_rotation_retention__policy:=${NEO4J_dbms_tx__log_rotation_retention__policy:-}}
-: ${NEO4J_server_memory_pagecache_size:=${NEO4J_dbms_memory_pagecache_size:-}}
-: ${NEO4J_server_default__listen__address:=${NEO4J_dbms_default__listen__address:-}}
-if [ "${NEO4J_EDITION}" == "enterprise" ];
-  then
-   : ${NEO4J_server_cluster_advertised__address:=${NEO4J_causal__clustering_transaction__advertised__address:-}}
-   : ${NEO4J_server_cluster_raft_advertised__address:=${NEO4J_causal__clustering_raft__advertised__address:-}}
-fi
+if [ "${reuse_rendered_config}" != "yes" ]; then
 
-# ==== SET CONFIGURATIONS ====
+    # ==== RENAME LEGACY ENVIRONMENT CONF VARIABLES ====
+    profile_phase "config"
 
-## == DOCKER SPECIFIC DEFAULT CONFIGURATIONS ===
-## these should not override *any* configurations set by the user
+    # Env variable naming convention:
+    # - prefix NEO4J_
+    # - double underscore char '__' instead of single underscore '_' char in the setting name
+    # - underscore char '_' instead of dot '.' char in the setting name
+    # Example:
+    # NEO4J_server_tx__log_rotation_retention__policy env variable to set
+    #       server.tx_log.rotation.retention_policy setting
 
-debug_msg "Setting docker specific configuration overrides"
-add_docker_default_to_conf "server.memory.pagecache.size" "512M"
-add_docker_default_to_conf "server.default_listen_address" "0.0.0.0"
+    # we only need to override the configurations with a docker specific override.
+    # The other config renames will be taken care of inside Neo4j.
+    : ${NEO4J_db_tx__log_rotation_retention__policy:=${NEO4J_dbms_tx__log_rotation_retention__policy:-}}
+    : ${NEO4J_server_memory_pagecache_size:=${NEO4J_dbms_memory_pagecache_size:-}}
+    : ${NEO4J_server_default__listen__address:=${NEO4J_dbms_default__listen__address:-}}
+    if [ "${NEO4J_EDITION}" == "enterprise" ];
+      then
+       : ${NEO4J_server_cluster_advertised__address:=${NEO4J_causal__clustering_transaction__advertised__address:-}}
+       : ${NEO4J_server_cluster_raft_advertised__address:=${NEO4J_causal__clustering_raft__advertised__address:-}}
+    fi
 
-# set enterprise only docker defaults
-if [ "${NEO4J_EDITION}" == "enterprise" ];
-then
-    debug_msg "Setting docker specific Enterprise Edition overrides"
-    add_docker_default_to_conf "server.cluster.advertised_address" "$(hostname):6000"
-    add_docker_default_to_conf "server.cluster.raft.advertised_address" "$(hostname):7000"
-    add_docker_default_to_conf "server.routing.advertised_address" "$(hostname):7688"
-fi
+    # ==== SET CONFIGURATIONS ====
 
-## == ENVIRONMENT VARIABLE CONFIGURATIONS ===
-## these override BOTH defaults and any existing values in the neo4j.conf file
+    ## == DOCKER SPECIFIC DEFAULT CONFIGURATIONS ===
+    ## these should not override *any* configurations set by the user
 
-# these are docker control envs that have the NEO4J_ prefix but we don't want to add to the config.
-not_configs=("NEO4J_ACCEPT_LICENSE_AGREEMENT" "NEO4J_AUTH" "NEO4J_AUTH_PATH" "NEO4J_DEBUG" "NEO4J_EDITION" \
-             "NEO4J_HOME" "NEO4J_PLUGINS" "NEO4J_SHA256" "NEO4J_TARBALL" "NEO4J_DEPRECATION_WARNING")
+    debug_msg "Setting docker specific configuration overrides"
+    case "${NEO4J_AUTO_MEMORY:-false}" in
+        true)
+            if ! add_auto_memory_defaults; then
+                add_docker_default_to_conf "server.memory.pagecache.size" "512M"
+            fi
+        ;;
+        false)
+            add_docker_default_to_conf "server.memory.pagecache.size" "512M"
+        ;;
+        *)
+            echo >&2 "Invalid value for NEO4J_AUTO_MEMORY: '${NEO4J_AUTO_MEMORY}'. It must be true or false."
+            exit 1
+        ;;
+    esac
+    case "${NEO4J_AUTO_CPU:-false}" in
+        true)
+            add_auto_cpu_defaults
+        ;;
+        false) ;;
+        *)
+            echo >&2 "Invalid value for NEO4J_AUTO_CPU: '${NEO4J_AUTO_CPU}'. It must be true or false."
+            exit 1
+        ;;
+    esac
+    add_docker_default_to_conf "server.default_listen_address" "0.0.0.0"
 
-debug_msg "Applying configuration settings that have been set using environment variables."
-# list env variables with prefix NEO4J_ and create settings from them
-for i in $( set | grep ^NEO4J_ | awk -F'=' '{print $1}' | sort -rn ); do
-    if containsElement "$i" "${not_configs[@]}"; then
-        continue
+    # set enterprise only docker defaults
+    if [ "${NEO4J_EDITION}" == "enterprise" ];
+    then
+        debug_msg "Setting docker specific Enterprise Edition overrides"
+        add_docker_default_to_conf "server.cluster.advertised_address" "$(hostname):6000"
+        add_docker_default_to_conf "server.cluster.raft.advertised_address" "$(hostname):7000"
+        add_docker_default_to_conf "server.routing.advertised_address" "$(hostname):7688"
     fi
-
-    # Skip env variables with suffix _FILE, these are docker secrets
-    if [[ "$i" == *"_FILE" ]]; then
-        continue
+    merge_docker_defaults
+
+    ## == ENVIRONMENT VARIABLE CONFIGURATIONS ===
+    ## these override BOTH defaults and any existing values in the neo4j.conf file
+
+    # these are docker control envs that have the NEO4J_ prefix but we don't want to add to the config.
+    not_configs=("NEO4J_ACCEPT_LICENSE_AGREEMENT" "NEO4J_AUTH" "NEO4J_AUTH_PATH" "NEO4J_DEBUG" "NEO4J_EDITION" \
+                 "NEO4J_HOME" "NEO4J_PLUGINS" "NEO4J_SHA256" "NEO4J_TARBALL" "NEO4J_DEPRECATION_WARNING" \
+                 "NEO4J_MOUNT_SCAN_MODE" "NEO4J_MOUNT_SCAN_TIMEOUT" "NEO4J_REOWN_PROGRESS_INTERVAL" \
+                 "NEO4J_STARTUP_PROFILE" "NEO4J_AUTO_MEMORY" "NEO4J_MEMORY_CHECK" \
+                 "NEO4J_AUTO_CPU" "NEO4J_GC_PROFILE" "NEO4J_MEMORY_FOOTPRINT" "NEO4J_JVM_CACHE" \
+                 "NEO4J_LARGE_PAGES" "NEO4J_JFR" "NEO4J_JFR_MAX_SIZE" "NEO4J_JFR_MAX_AGE" "NEO4J_NMT" \
+                 "NEO4J_HEAP_DUMP_ON_OOM" "NEO4J_HEAP_DUMP_PATH" "NEO4J_HEAP_DUMP_KEEP" "NEO4J_GC_LOGGING" \
+                 "NEO4J_PLUGIN_DOWNLOAD_PARALLELISM")
+
+    debug_msg "Applying configuration settings that have been set using environment variables."
+    apply_env_settings_to_conf
+
+    ## == DOCKER SPECIFIC JVM OPTIONS ===
+    ## these are appended after the environment settings, so that any JVM options set by the user are not duplicated.
+    if [ "${NEO4J_AUTO_CPU:-false}" == "true" ]; then
+        add_auto_cpu_jvm_options
     fi
-
-    setting=$(echo "${i}" | sed 's|^NEO4J_||' | sed 's|_|.|g' | sed 's|\.\.|_|g')
-    value=$(echo "${!i}")
-    # Don't allow settings with no value or settings that start with a number (neo4j converts settings to env variables and you cannot have an env variable that starts with a number)
-    if [[ -n ${value} ]]; then
-        if [[ ! "${setting}" =~ ^[0-9]+.*$ ]]; then
-            add_env_setting_to_conf "${setting}" "${value}"
-        else
-            echo >&2 "WARNING: ${setting} not written to conf file. Settings that start with a number are not permitted."
-        fi
+    if [ -n "${NEO4J_GC_PROFILE:-}" ]; then
+        apply_gc_profile "${NEO4J_GC_PROFILE}"
     fi
-done
+    case "${NEO4J_MEMORY_FOOTPRINT:-default}" in
+        low)
+            apply_low_memory_footprint
+        ;;
+        default) ;;
+        *)
+            echo >&2 "Invalid value for NEO4J_MEMORY_FOOTPRINT: '${NEO4J_MEMORY_FOOTPRINT}'. It must be low or default."
+            exit 1
+        ;;
+    esac
+    debug_msg "Transparent huge pages on this host: $(transparent_huge_pages_mode)"
+    case "${NEO4J_LARGE_PAGES:-off}" in
+        auto)
+            apply_large_pages
+        ;;
+        off) ;;
+        *)
+            echo >&2 "Invalid value for NEO4J_LARGE_PAGES: '${NEO4J_LARGE_PAGES}'. It must be auto or off."
+            exit 1
+        ;;
+    esac
+    case "${NEO4J_JFR:-off}" in
+        continuous)
+            add_jfr_options
+        ;;
+        off) ;;
+        *)
+            echo >&2 "Invalid value for NEO4J_JFR: '${NEO4J_JFR}'. It must be continuous or off."
+            exit 1
+        ;;
+    esac
+    # Native memory tracking shows the JVM's memory use outside the heap, for neo4j-memory-report.
+    # summary costs little, detail also records where each allocation came from and is slower.
+    case "${NEO4J_NMT:-off}" in
+        summary|detail)
+            add_jvm_option_to_conf "-XX:NativeMemoryTracking=${NEO4J_NMT}"
+        ;;
+        off) ;;
+        *)
+            echo >&2 "Invalid value for NEO4J_NMT: '${NEO4J_NMT}'. It must be summary, detail or off."
+            exit 1
+        ;;
+    esac
+    case "${NEO4J_GC_LOGGING:-off}" in
+        on)
+            add_gc_logging_options
+        ;;
+        off) ;;
+        *)
+            echo >&2 "Invalid value for NEO4J_GC_LOGGING: '${NEO4J_GC_LOGGING}'. It must be on or off."
+            exit 1
+        ;;
+    esac
+    case "${NEO4J_JVM_CACHE:-true}" in
+        true)
+            add_jvm_cache_options
+        ;;
+        false) ;;
+        *)
+            echo >&2 "Invalid value for NEO4J_JVM_CACHE: '${NEO4J_JVM_CACHE}'. It must be true or false."
+            exit 1
+        ;;
+    esac
 
-# ==== SET PASSWORD ====
+fi
 
-if [[ -n "${NEO4J_AUTH_PATH:-}" ]]; then
-    # Validate the existence of the password file
-    if [ ! -f "${NEO4J_AUTH_PATH}" ]; then
-        echo >&2 "The password file '${NEO4J_AUTH_PATH}' does not exist"
+# Heap dumps are worked out on every start, even when the config is reused.
+# This is the last change to neo4j.conf, and has to be made before neo4j-admin is started in the background to set the password.
+case "${NEO4J_HEAP_DUMP_ON_OOM:-false}" in
+    true)
+        configure_heap_dumps
+    ;;
+    false) ;;
+    *)
+        echo >&2 "Invalid value for NEO4J_HEAP_DUMP_ON_OOM: '${NEO4J_HEAP_DUMP_ON_OOM}'. It must be true or false."
         exit 1
+    ;;
+esac
+
+if [ "${reuse_rendered_config}" != "yes" ]; then
+    # ==== SET PASSWORD ====
+    profile_phase "password"
+
+    if [[ -n "${NEO4J_AUTH_PATH:-}" ]]; then
+        # Validate the existence of the password file
+        if [ ! -f "${NEO4J_AUTH_PATH}" ]; then
+            echo >&2 "The password file '${NEO4J_AUTH_PATH}' does not exist"
+            exit 1
+        fi
+        # validate the password file is readable
+        check_mounted_folder_readable "${NEO4J_AUTH_PATH}"
+
+        debug_msg "Setting initial password from file ${NEO4J_AUTH_PATH}"
+        set_initial_password "$(cat ${NEO4J_AUTH_PATH})"
+    else
+        debug_msg "Setting initial password from environment"
+        set_initial_password "${NEO4J_AUTH:-}"
     fi
-    # validate the password file is readable
-    check_mounted_folder_readable "${NEO4J_AUTH_PATH}"
 
-    debug_msg "Setting initial password from file ${NEO4J_AUTH_PATH}"
-    set_initial_password "$(cat ${NEO4J_AUTH_PATH})"
-else
-    debug_msg "Setting initial password from environment"
-    set_initial_password "${NEO4J_AUTH:-}"
+    write_conf_precedence_report
 fi
 
 # ==== CLEANUP RUN FILE ====
@@ -640,8 +2063,13 @@ then
 fi
 
 # ==== INVOKE NEO4J STARTUP ====
+profile_phase "extension-script"
 
-[ -f "${EXTENSION_SCRIPT:-}" ] && . ${EXTENSION_SCRIPT}
+if [ -f "${EXTENSION_SCRIPT:-}" ]; then
+    # the extension script may depend on the initial password having been set
+    join_background "set-initial-password"
+    . ${EXTENSION_SCRIPT}
+fi
 
 if [ "${cmd}" == "dump-config" ]; then
     if [ ! -d "/conf" ]; then
@@ -654,6 +2082,26 @@ if [ "${cmd}" == "dump-config" ]; then
     exit 0
 fi
 
+# render-config produces the same configuration as starting neo4j would, without starting any JVMs:
+#   render-config              prints neo4j.conf to stdout
+#   render-config <file name>  prints another file from the conf folder to stdout, e.g. apoc.conf
+#   render-config <folder>     writes all the configuration files to a mounted folder, e.g. /conf
+if [ "${cmd}" == "render-config" ]; then
+    render_target="${2:-neo4j.conf}"
+    if [ -d "${render_target}" ]; then
+        check_mounted_folder_writable_with_chown "${render_target}"
+        cp --recursive "${NEO4J_HOME}"/conf/* "${render_target}"
+        echo "Config rendered to ${render_target}"
+    elif [[ "${render_target}" != */* ]] && [ -f "${NEO4J_HOME}/conf/${render_target}" ]; then
+        cat "${NEO4J_HOME}/conf/${render_target}" >&3
+    else
+        echo >&2 "Cannot render config to '${render_target}'. It must be a mounted folder or the name of a file in ${NEO4J_HOME}/conf."
+        exit 1
+    fi
+    profile_finish "${NEO4J_HOME}/logs/startup-profile.json" "coredb"
+    exit 0
+fi
+
 # this prints out a command for us to run.
 # the command is something like: `java ...[lots of java options]... neo4j.mainClass ...[some neo4j options]...`
 # putting debug messages here causes the function to break
@@ -673,13 +2121,52 @@ function get_neo4j_run_cmd {
 }
 
 if [ "${cmd}" == "neo4j" ]; then
-    # separate declaration and use of get_neo4j_run_cmd so that error codes are correctly surfaced
-    debug_msg "getting full neo4j run command"
-    neo4j_console_cmd="$(get_neo4j_run_cmd)"
+    profile_phase "memory-check"
+    check_memory_budget
+
+    # The console command only depends on the config and the java installation, so it is cached against the
+    # config fingerprint to avoid starting a JVM for the dry run when nothing has changed.
+    # Commands in the config can return something different every time, so the command is never cached with EXTENDED_CONF.
+    profile_phase "dry-run"
+    console_cmd_cache_file="${docker_state_dir}/console.cmd"
+    if [ -n "${env_fingerprint:-}" ]; then
+        config_fingerprint="$(config_inputs_fingerprint "${env_fingerprint}") $(rendered_config_checksum)"
+        console_cmd_cache_key="${config_fingerprint} java=${JAVA_HOME:-} ${JAVA_OPTS:-}"
+    fi
+    if [ -n "${console_cmd_cache_key:-}" ] && [ "${EXTENDED_CONF+"yes"}" != "yes" ] && \
+       [ -f "${console_cmd_cache_file}" ] && [ "$(head -n 1 "${console_cmd_cache_file}")" == "${console_cmd_cache_key}" ]; then
+        debug_msg "Reusing cached neo4j run command from ${console_cmd_cache_file}"
+        neo4j_console_cmd="$(tail -n +2 "${console_cmd_cache_file}")"
+    else
+        rm -f "${console_cmd_cache_file}"
+        # separate declaration and use of get_neo4j_run_cmd so that error codes are correctly surfaced
+        debug_msg "getting full neo4j run command"
+        neo4j_console_cmd="$(get_neo4j_run_cmd)"
+        if [ -n "${console_cmd_cache_key:-}" ] && [ "${EXTENDED_CONF+"yes"}" != "yes" ]; then
+            printf '%s\n%s\n' "${console_cmd_cache_key}" "${neo4j_console_cmd}" > "${console_cmd_cache_file}"
+        fi
+    fi
+    profile_phase "password-join"
+    join_background "set-initial-password"
     debug_msg "${exec_cmd} ${neo4j_console_cmd}"
+    if [ -n "${config_fingerprint:-}" ]; then
+        echo "${config_fingerprint}" > "${config_fingerprint_file}"
+    fi
+    profile_finish "${NEO4J_HOME}/logs/startup-profile.json" "coredb"
     #%%DEPRECATION_WARNING_PLACEHOLDER%%
+    if [ "${NEO4J_GC_LOGGING:-off}" == "on" ] && \
+       grep --quiet "^server\.jvm\.additional=-Xlog:gc\*,safepoint:file=${gc_log_dir}/gc\.log:" "${NEO4J_HOME}"/conf/neo4j.conf; then
+        run_neo4j_and_print_gc_summary ${neo4j_console_cmd?:No Neo4j command was generated}
+    fi
     eval ${exec_cmd} ${neo4j_console_cmd?:No Neo4j command was generated}
 else
+    profile_finish "${NEO4J_HOME}/logs/startup-profile.json" "coredb"
+    if [ "${cmd}" == "neo4j-admin" ]; then
+        admin_java_opts="$(neo4j_admin_java_opts)"
+        if [ -n "${admin_java_opts}" ]; then
+            export JAVA_OPTS="${admin_java_opts}"
+        fi
+    fi
     debug_msg "${exec_cmd}" "$@"
     ${exec_cmd} "$@"
 fi
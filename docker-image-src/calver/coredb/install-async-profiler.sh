@@ -0,0 +1,23 @@
+#!/bin/bash -eu
+
+# Installs async-profiler in the image for neo4j-profile. This only happens when the image is built with
+#   --build-arg ASYNC_PROFILER_URL=<async-profiler 3 or later release tarball for the image's architecture>
+#   --build-arg ASYNC_PROFILER_SHA256=<sha256 of the tarball>
+# Otherwise nothing is installed, and neo4j-profile uses Java Flight Recorder.
+
+if [ -z "${ASYNC_PROFILER_URL:-}" ]; then
+    exit 0
+fi
+if [ -z "${ASYNC_PROFILER_SHA256:-}" ]; then
+    echo >&2 "ASYNC_PROFILER_SHA256 must be set when ASYNC_PROFILER_URL is."
+    exit 1
+fi
+
+echo "Installing async-profiler from ${ASYNC_PROFILER_URL}"
+wget -q "${ASYNC_PROFILER_URL}" -O /tmp/async-profiler.tar.gz
+echo "${ASYNC_PROFILER_SHA256}  /tmp/async-profiler.tar.gz" | sha256sum -c --strict --quiet
+mkdir -p /opt/async-profiler
+tar --extract --file /tmp/async-profiler.tar.gz --directory /opt/async-profiler --strip-components=1
+rm /tmp/async-profiler.tar.gz
+chmod -R a+rX /opt/async-profiler
+/opt/async-profiler/bin/asprof --version
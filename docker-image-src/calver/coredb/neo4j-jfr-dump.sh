@@ -0,0 +1,59 @@
+#!/bin/bash
+
+# Saves the continuous Java Flight Recorder recording started by NEO4J_JFR=continuous to a file,
+# so that it can be opened with JDK Mission Control or the jfr tool. For example:
+#   docker exec <container> neo4j-jfr-dump
+#   docker exec <container> neo4j-jfr-dump --to-path=/some/mounted/folder
+
+# load useful utility functions
+. /startup/utilities.sh
+
+function find_dump_destination
+{
+    local to_flag="--to-path"
+
+    while [[ $# -gt 0 ]]; do
+        case $1 in
+            "${to_flag}"=*)
+                echo ${1#*=}
+                return
+                ;;
+            "${to_flag}")
+                echo ${2}
+                return
+                ;;
+            *)
+                shift
+                ;;
+        esac
+    done
+    # by default the recording is saved next to the one that is written when neo4j stops.
+    sed -n 's|^server\.jvm\.additional=-XX:StartFlightRecording=.*filename=\(.*\)/[^/]*$|\1|p' \
+        "${NEO4J_HOME}"/conf/neo4j.conf | tail -n 1
+}
+
+if [[ "${1:-}" == "--help" ]]; then
+    echo "Usage: neo4j-jfr-dump [--to-path=<folder>]
+Saves the continuous Java Flight Recorder recording of the running neo4j server.
+The container must have been started with NEO4J_JFR=continuous."
+    exit 0
+fi
+
+if ! grep --quiet "^server\.jvm\.additional=-XX:StartFlightRecording=name=continuous" "${NEO4J_HOME}"/conf/neo4j.conf; then
+    echo >&2 "There is no continuous Java Flight Recorder recording. Start the container with NEO4J_JFR=continuous to use neo4j-jfr-dump."
+    exit 1
+fi
+
+neo4j_pid="$(neo4j_server_pid)"
+if [[ -z "${neo4j_pid}" ]]; then
+    echo >&2 "Neo4j is not running, so there is no recording to save."
+    exit 1
+fi
+
+dump_destination=$(find_dump_destination "$@")
+debug_msg "dump_destination will be ${dump_destination}"
+
+prepare_diagnostics_destination "${dump_destination}" "${neo4j_pid}"
+
+dump_file="${dump_destination}/neo4j-$(date -u +%Y%m%dT%H%M%SZ).jfr"
+run_jcmd "${neo4j_pid}" JFR.dump name=continuous filename="${dump_file}"
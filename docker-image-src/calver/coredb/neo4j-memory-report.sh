@@ -0,0 +1,156 @@
+#!/bin/bash
+
+# Writes a report of where the memory of the running neo4j server goes: the container's cgroup memory usage,
+# the process RSS, the configured memory settings, the JVM heap, and the JVM's native memory if NEO4J_NMT is set.
+# The page cache is allocated outside the heap, so the memory it actually uses is only known with NEO4J_NMT.
+# For example:
+#   docker exec <container> neo4j-memory-report --to-path=/reports
+#   docker exec <container> neo4j-memory-report --interval=600
+# With --interval, a second snapshot is taken after that many seconds, with the changes since the first one.
+
+# load useful utility functions
+. /startup/utilities.sh
+
+function usage
+{
+    echo "Usage: neo4j-memory-report [--interval=<seconds>] [--to-path=<folder>]
+Writes a report of the memory used by the running neo4j server.
+    --interval  also report how memory use changes over this many seconds.
+    --to-path   folder to write the report to. Default /tmp/reports.
+Start the container with NEO4J_NMT=summary to include the JVM's native memory in the report."
+}
+
+function cgroup_memory_usage
+{
+    if [[ -r /sys/fs/cgroup/memory.current ]]; then
+        cat /sys/fs/cgroup/memory.current
+    elif [[ -r /sys/fs/cgroup/memory/memory.usage_in_bytes ]]; then
+        cat /sys/fs/cgroup/memory/memory.usage_in_bytes
+    fi
+}
+
+function process_rss_kb
+{
+    awk '/^VmRSS:/ {print $2}' "/proc/${neo4j_pid}/status"
+}
+
+function print_cgroup_memory
+{
+    local _limit
+    _limit="$(container_memory_limit)"
+    echo "Container memory limit: ${_limit:-none}"
+    echo "Container memory usage: $(cgroup_memory_usage)"
+    local _stat_file
+    for _stat_file in /sys/fs/cgroup/memory.stat /sys/fs/cgroup/memory/memory.stat; do
+        if [[ -r "${_stat_file}" ]]; then
+            # the main kinds of memory that count towards the container's limit, in bytes
+            grep -E '^(anon|file|kernel|kernel_stack|sock|shmem|rss|cache|mapped_file) ' "${_stat_file}"
+            break
+        fi
+    done
+}
+
+function memory_snapshot
+{
+    echo "==== $(date -u +%Y-%m-%dT%H:%M:%SZ) ===="
+    echo "---- cgroup memory ----"
+    print_cgroup_memory
+    echo "---- neo4j process (PID ${neo4j_pid}) ----"
+    grep -E '^(VmRSS|VmHWM|RssAnon|RssFile|RssShmem|Threads):' "/proc/${neo4j_pid}/status"
+    echo "---- neo4j memory settings (configured) ----"
+    grep -E '^(server|dbms)\.memory\.' "${NEO4J_HOME}"/conf/neo4j.conf || echo "(defaults)"
+    echo "---- page cache ----"
+    print_page_cache_memory
+    echo "---- JVM heap ----"
+    run_jcmd "${neo4j_pid}" GC.heap_info
+}
+
+function print_page_cache_memory
+{
+    # The page cache is allocated with Unsafe, which native memory tracking counts under Other,
+    # together with any other direct memory such as network buffers.
+    # NMT leaves out categories that have nothing allocated.
+    if [[ "${nmt_enabled}" == "yes" ]]; then
+        local _other
+        _other="$(run_jcmd "${neo4j_pid}" VM.native_memory summary scale=MB | sed -n 's/^-[[:space:]]*Other (\(.*\))$/\1/p')"
+        echo "In use (NMT Other, includes other direct memory): ${_other:-none}"
+    else
+        echo "In use: unknown. Start the container with NEO4J_NMT=summary to see the memory the page cache uses."
+    fi
+}
+
+interval=""
+report_destination=""
+while [[ $# -gt 0 ]]; do
+    case $1 in
+        --interval=*) interval=${1#*=} ;;
+        --interval) interval=${2:-}; shift ;;
+        --to-path=*) report_destination=${1#*=} ;;
+        --to-path) report_destination=${2:-}; shift ;;
+        --help)
+            usage
+            exit 0
+            ;;
+        *)
+            echo >&2 "Unknown argument ${1}"
+            usage >&2
+            exit 1
+            ;;
+    esac
+    shift
+done
+
+if [[ -n "${interval}" ]] && [[ ! "${interval}" =~ ^[0-9]+$ ]]; then
+    echo >&2 "--interval must be a whole number of seconds, not '${interval}'."
+    exit 1
+fi
+if [[ -z "${report_destination}" ]]; then
+    report_destination="/tmp/reports"
+    mkdir -p "${report_destination}"
+fi
+
+neo4j_pid="$(neo4j_server_pid)"
+if [[ -z "${neo4j_pid}" ]]; then
+    echo >&2 "Neo4j is not running, so there is no memory to report on."
+    exit 1
+fi
+debug_msg "report_destination will be ${report_destination}"
+prepare_diagnostics_destination "${report_destination}" "${neo4j_pid}"
+
+nmt_enabled="no"
+if grep --quiet '^server\.jvm\.additional=-XX:NativeMemoryTracking=\(summary\|detail\)' "${NEO4J_HOME}"/conf/neo4j.conf; then
+    nmt_enabled="yes"
+fi
+
+report_file="${report_destination}/neo4j-memory-$(date -u +%Y%m%dT%H%M%SZ).txt"
+{
+    memory_snapshot
+    echo "---- JVM native memory ----"
+    if [[ "${nmt_enabled}" == "yes" ]]; then
+        run_jcmd "${neo4j_pid}" VM.native_memory summary scale=MB
+    else
+        echo "Native memory tracking is off. Start the container with NEO4J_NMT=summary to include it."
+    fi
+
+    if [[ -n "${interval}" ]]; then
+        usage_before="$(cgroup_memory_usage)"
+        rss_before="$(process_rss_kb)"
+        if [[ "${nmt_enabled}" == "yes" ]]; then
+            run_jcmd "${neo4j_pid}" VM.native_memory baseline > /dev/null
+        fi
+        sleep "${interval}"
+        echo
+        memory_snapshot
+        echo "---- changes over ${interval} seconds ----"
+        if [[ -n "${usage_before}" ]]; then
+            echo "Container memory usage: $(( $(cgroup_memory_usage) - usage_before )) bytes"
+        fi
+        echo "neo4j RSS: $(( $(process_rss_kb) - rss_before )) kB"
+        if [[ "${nmt_enabled}" == "yes" ]]; then
+            run_jcmd "${neo4j_pid}" VM.native_memory summary.diff scale=MB
+        fi
+    fi
+} > "${report_file}"
+
+cat "${report_file}"
+echo "Wrote memory report to ${report_file}"
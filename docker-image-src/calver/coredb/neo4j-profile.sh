@@ -0,0 +1,105 @@
+#!/bin/bash
+
+# Profiles the running neo4j server for a while without restarting it. For example:
+#   docker exec <container> neo4j-profile --duration=30 --event=cpu --to-path=/profiles
+# async-profiler is not in the images by default. Images built with it (see install-async-profiler.sh) write a flame
+# graph as html. Other images use Java Flight Recorder and write a .jfr file, which JDK Mission Control can show as a flame graph.
+
+# load useful utility functions
+. /startup/utilities.sh
+
+async_profiler="/opt/async-profiler/bin/asprof"
+
+function usage
+{
+    echo "Usage: neo4j-profile [--duration=<seconds>] [--event=cpu|alloc|lock] [--to-path=<folder>]
+Profiles the running neo4j server and writes the profile to a folder, which should be mounted.
+    --duration  how long to profile for, in seconds. Default 30.
+    --event     what to sample: cpu time, memory allocations or lock contention. Default cpu.
+    --to-path   folder to write the profile to. Default /tmp/profiles.
+The profile is a Java Flight Recorder .jfr file, or an html flame graph if the image was built with async-profiler."
+}
+
+function jfr_event_settings
+{
+    # The Java Flight Recorder settings that record the given event, for a recording started with settings=none.
+    case "${1}" in
+        cpu)
+            echo "+jdk.ExecutionSample#enabled=true +jdk.ExecutionSample#period=10ms" \
+                "+jdk.NativeMethodSample#enabled=true +jdk.NativeMethodSample#period=20ms"
+            ;;
+        alloc)
+            echo "+jdk.ObjectAllocationSample#enabled=true +jdk.ObjectAllocationSample#throttle=300/s" \
+                "+jdk.ObjectAllocationSample#stackTrace=true"
+            ;;
+        lock)
+            echo "+jdk.JavaMonitorEnter#enabled=true +jdk.JavaMonitorEnter#threshold=10ms +jdk.JavaMonitorEnter#stackTrace=true" \
+                "+jdk.ThreadPark#enabled=true +jdk.ThreadPark#threshold=10ms +jdk.ThreadPark#stackTrace=true"
+            ;;
+    esac
+}
+
+duration=30
+event="cpu"
+profile_destination=""
+while [[ $# -gt 0 ]]; do
+    case $1 in
+        --duration=*) duration=${1#*=} ;;
+        --duration) duration=${2:-}; shift ;;
+        --event=*) event=${1#*=} ;;
+        --event) event=${2:-}; shift ;;
+        --to-path=*) profile_destination=${1#*=} ;;
+        --to-path) profile_destination=${2:-}; shift ;;
+        --help)
+            usage
+            exit 0
+            ;;
+        *)
+            echo >&2 "Unknown argument ${1}"
+            usage >&2
+            exit 1
+            ;;
+    esac
+    shift
+done
+
+if [[ ! "${duration}" =~ ^[0-9]+$ ]] || [[ "${duration}" -eq 0 ]]; then
+    echo >&2 "--duration must be a whole number of seconds, not '${duration}'."
+    exit 1
+fi
+if ! containsElement "${event}" "cpu" "alloc" "lock"; then
+    echo >&2 "--event must be cpu, alloc or lock, not '${event}'."
+    exit 1
+fi
+if [[ -z "${profile_destination}" ]]; then
+    profile_destination="/tmp/profiles"
+    mkdir -p "${profile_destination}"
+fi
+
+neo4j_pid="$(neo4j_server_pid)"
+if [[ -z "${neo4j_pid}" ]]; then
+    echo >&2 "Neo4j is not running, so there is nothing to profile."
+    exit 1
+fi
+debug_msg "profile_destination will be ${profile_destination}"
+prepare_diagnostics_destination "${profile_destination}" "${neo4j_pid}"
+
+profile_file="${profile_destination}/neo4j-${event}-$(date -u +%Y%m%dT%H%M%SZ)"
+echo "Profiling ${event} of neo4j (PID ${neo4j_pid}) for ${duration} seconds."
+if [[ -x "${async_profiler}" ]]; then
+    # async-profiler attaches the same way jcmd does, so it has to run as the JVM's user too.
+    profiler_cmd=("${async_profiler}" -d "${duration}" -e "${event}" -f "${profile_file}.html" "${neo4j_pid}")
+    if running_as_root; then
+        su-exec "$(stat -c %u:%g "/proc/${neo4j_pid}")" "${profiler_cmd[@]}"
+    else
+        "${profiler_cmd[@]}"
+    fi
+    echo "Wrote flame graph to ${profile_file}.html"
+else
+    debug_msg "async-profiler is not in this image, profiling with Java Flight Recorder"
+    # only the events for the chosen event are recorded, so the profile is not mixed up with the others.
+    run_jcmd "${neo4j_pid}" JFR.start name=neo4j-profile settings=none $(jfr_event_settings "${event}") > /dev/null
+    sleep "${duration}"
+    run_jcmd "${neo4j_pid}" JFR.stop name=neo4j-profile filename="${profile_file}.jfr" > /dev/null
+    echo "Wrote Java Flight Recorder profile to ${profile_file}.jfr"
+fi
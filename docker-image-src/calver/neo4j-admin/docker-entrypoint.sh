@@ -27,6 +27,7 @@ function check_mounted_folder_writable_with_chown
 
 # ==== SETUP WHICH USER TO RUN AS ====
 debug_msg "DEBUGGING ENABLED"
+profile_phase "setup"
 
 if running_as_root; then
   userid="neo4j"
@@ -45,6 +46,7 @@ fi
 #%%DEPRECATION_WARNING_PLACEHOLDER%%
 
 # ==== MAKE SURE NEO4J CANNOT BE RUN FROM THIS CONTAINER ====
+profile_phase "command-checks"
 debug_msg "checking neo4j was not requested"
 if [[ "${1}" == "neo4j" ]]; then
     correct_image="neo4j:"$(neo4j-admin --version)"-${NEO4J_EDITION}"
@@ -74,7 +76,18 @@ docker exec <CONTAINER NAME> neo4j-admin-report
 fi
 
 
+# ==== CHECK JVM CACHE SETTING ====
+case "${NEO4J_JVM_CACHE:-true}" in
+    true|false) ;;
+    *)
+        echo >&2 "Invalid value for NEO4J_JVM_CACHE: '${NEO4J_JVM_CACHE}'. It must be true or false."
+        exit 1
+    ;;
+esac
+
+
 # ==== CHECK LICENSE AGREEMENT ====
+profile_phase "license"
 
 debug_msg "checking license"
 # Only prompt for license agreement if command contains "neo4j" in it
@@ -116,6 +129,7 @@ To do this you can use the following docker argument:
 fi
 
 # ==== ENSURE MOUNT FOLDER READ/WRITABILITY ====
+profile_phase "mount-permissions"
 debug_msg "Checking for mounted folder writability"
 
 if [ -d /data ]; then
@@ -135,6 +149,19 @@ if [ -d /backups ]; then
 fi
 
 # ==== START NEO4J-ADMIN COMMAND ====
+# neo4j-admin uses the class data cache that was made when the image was built, see jvm_cache_options.
+if [[ "${1}" == "neo4j-admin" ]]; then
+    admin_java_opts="$(neo4j_admin_java_opts)"
+    if [ -n "${admin_java_opts}" ]; then
+        debug_msg "Running neo4j-admin with JAVA_OPTS=${admin_java_opts}"
+        export JAVA_OPTS="${admin_java_opts}"
+    fi
+fi
+if [ -d /logs ]; then
+    profile_finish "/logs/startup-profile.json" "neo4j-admin"
+else
+    profile_finish "${NEO4J_HOME}/logs/startup-profile.json" "neo4j-admin"
+fi
 if debugging_enabled; then
     echo ${exec_cmd} "${@}" --verbose
     ${exec_cmd} "${@}" --verbose
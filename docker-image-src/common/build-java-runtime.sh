@@ -0,0 +1,68 @@
+#!/bin/bash -eu
+set -o pipefail
+
+# Builds a Java runtime with jlink that only has the modules Neo4j needs, for images built with JAVA_RUNTIME=jlink.
+# usage: build-java-runtime.sh <unpacked neo4j distribution> <output folder>
+#
+# The modules come from running jdeps over the jars in lib, and over the plugins bundled in labs and products,
+# so that plugins installed with NEO4J_PLUGINS still work. jdeps cannot see modules that are only used at runtime,
+# through service loaders, the attach API, JVM options in neo4j.conf and so on, so those are added explicitly.
+
+. /startup/utilities.sh
+
+neo4j_dist=${1}
+output=${2}
+java_version="$(java_major_version)"
+
+# modules that are only loaded at runtime:
+#   diagnostics   JFR, JMX, jcmd and the attach API used by neo4j-admin server report
+#   security      LDAP over DNS, Kerberos and PKCS#11
+#   other         locales and charsets for dates and LOAD CSV, and the zip file system
+# Incubator modules such as jdk.incubator.vector are only added if neo4j.conf uses them,
+# because the JVM warns about every incubator module that is linked into the runtime.
+runtime_modules=(
+    jdk.jfr jdk.management jdk.management.agent jdk.management.jfr jdk.attach jdk.jcmd jdk.jdwp.agent java.instrument
+    jdk.naming.dns java.security.jgss jdk.security.auth jdk.security.jgss jdk.crypto.cryptoki jdk.crypto.ec
+    jdk.localedata jdk.charsets jdk.zipfs jdk.net jdk.unsupported
+)
+
+jars=()
+for _folder in lib labs products plugins; do
+    if compgen -G "${neo4j_dist}/${_folder}/*.jar" > /dev/null; then
+        jars+=("${neo4j_dist}/${_folder}"/*.jar)
+    fi
+done
+
+echo "Finding the Java modules used by ${#jars[@]} jars in ${neo4j_dist}"
+# jdeps can print warnings, e.g. about split packages, before the list of modules on the last line.
+if ! modules="$(jdeps --ignore-missing-deps --print-module-deps --multi-release "${java_version}" "${jars[@]}" | tail -n 1)"; then
+    # jdeps fails on modular jars whose required modules are not shipped. The runtime is then less trimmed,
+    # but java.se still leaves out the compiler and the other JDK tools.
+    echo >&2 "WARNING: jdeps could not work out the modules used by Neo4j, using all of java.se instead."
+    modules="java.se"
+fi
+
+# modules named in JVM options in the default neo4j.conf, e.g. --add-opens=java.base/java.nio=ALL-UNNAMED
+conf_modules="$(sed -n 's/^[# ]*server\.jvm\.additional=--add-\(modules\|opens\|exports\|reads\)[= ]\([A-Za-z0-9.]*\).*/\2/p' \
+    "${neo4j_dist}/conf/neo4j.conf" | sort -u)"
+
+# only add runtime modules that this JDK has, since modules are sometimes merged or removed between releases
+available_modules="$(java --list-modules | sed 's/@.*//')"
+for _module in "${runtime_modules[@]}" ${conf_modules}; do
+    if grep --quiet --line-regexp --fixed-strings "${_module}" <<< "${available_modules}"; then
+        modules+=",${_module}"
+    fi
+done
+
+modules="$(tr ',' '\n' <<< "${modules}" | sort -u | paste -s -d ,)"
+
+# The runtime is not compressed with --compress, because image layers are compressed anyway
+# and uncompressed modules load faster. A default CDS archive is generated, because the JVM class data caches need it.
+jlink_options=(--strip-debug --no-man-pages --no-header-files)
+if jlink --list-plugins | grep --quiet -- "--generate-cds-archive"; then
+    jlink_options+=(--generate-cds-archive)
+fi
+echo "Linking a Java ${java_version} runtime with modules ${modules}"
+jlink --add-modules "${modules}" "${jlink_options[@]}" --output "${output}"
+
+"${output}/bin/java" -version
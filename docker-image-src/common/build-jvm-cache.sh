@@ -0,0 +1,114 @@
+#!/bin/bash -eu
+
+# Builds the class data caches that the entrypoints pass to the JVM with jvm_cache_options.
+# This runs once while the image is built. It starts neo4j (in images that have the server) and neo4j-admin with
+# some representative work, and the JVM saves the classes they loaded when it exits, so that later starts can skip
+# loading, parsing and verifying them. JDK 25 and later make an AOT cache, older JDKs make a dynamic AppCDS archive.
+# If training fails the build fails, so that an image is never published without its caches.
+
+. /startup/utilities.sh
+
+cache_dir="${NEO4J_HOME}/jvm-cache"
+training_dir="$(mktemp -d)"
+conf_file="${NEO4J_HOME}/conf/neo4j.conf"
+java_version="$(java_major_version)"
+
+function run_as_neo4j
+{
+    # the same way the entrypoint runs them, neo4j-admin images do not have su-exec.
+    if command -v su-exec > /dev/null; then
+        su-exec neo4j:neo4j env NEO4J_ACCEPT_LICENSE_AGREEMENT=yes "$@"
+    else
+        runuser -u neo4j -g neo4j -- env NEO4J_ACCEPT_LICENSE_AGREEMENT=yes "$@"
+    fi
+}
+
+function cache_output_option
+{
+    if [ "${java_version:-0}" -ge 25 ]; then
+        echo "-XX:AOTCacheOutput=${cache_dir}/${1}.aot"
+    else
+        echo "-XX:ArchiveClassesAtExit=${cache_dir}/${1}.jsa"
+    fi
+}
+
+function run_training_query
+{
+    wget --quiet --output-document=/dev/null \
+        --header="Content-Type: application/json" \
+        --post-data="{\"statements\":[{\"statement\":\"${1}\"}]}" \
+        http://localhost:7474/db/neo4j/tx/commit
+}
+
+function train_neo4j
+{
+    echo "server.jvm.additional=$(cache_output_option neo4j)" >> "${conf_file}"
+    run_as_neo4j neo4j start || return 1
+    local _waited=0
+    until grep --quiet "Started." "${training_dir}/logs/neo4j.log" 2>/dev/null; do
+        if [ ${_waited} -ge 120 ]; then
+            echo >&2 "neo4j did not start within 120 seconds."
+            run_as_neo4j neo4j stop
+            return 1
+        fi
+        sleep 1
+        _waited=$(( _waited + 1 ))
+    done
+    if command -v wget > /dev/null; then
+        run_training_query "UNWIND range(1, 1000) AS i CREATE (:Training {id: i})-[:NEXT]->(:Training {id: i + 1000})" || true
+        run_training_query "MATCH (a:Training)-[:NEXT]->(b) WHERE a.id % 7 = 0 RETURN a.id, b.id ORDER BY a.id LIMIT 10" || true
+    fi
+    run_as_neo4j neo4j stop
+}
+
+function train_neo4j_admin
+{
+    printf 'id:ID,name\n1,a\n2,b\n3,c\n' > "${training_dir}/nodes.csv"
+    printf ':START_ID,:END_ID,:TYPE\n1,2,NEXT\n2,3,NEXT\n' > "${training_dir}/relationships.csv"
+    run_as_neo4j neo4j-admin database import full training \
+        --nodes="${training_dir}/nodes.csv" --relationships="${training_dir}/relationships.csv" || return 1
+    mkdir -p "${training_dir}/dumps"
+    chown neo4j:neo4j "${training_dir}/dumps"
+    # dumps and backups are the jobs where neo4j-admin startup is the biggest share of the run time
+    run_as_neo4j JAVA_OPTS="$(cache_output_option neo4j-admin)" \
+        neo4j-admin database dump training --to-path="${training_dir}/dumps"
+}
+
+echo "Building JVM class data caches in ${cache_dir}"
+mkdir -p "${cache_dir}" "${training_dir}"/{data,logs,run}
+chown neo4j:neo4j "${cache_dir}" "${training_dir}"/{data,logs,run}
+
+# training uses its own data, logs and run folders, so nothing from it ends up in the image except the caches.
+cp -p "${conf_file}" "${training_dir}/neo4j.conf.orig"
+cat >> "${conf_file}" <<EOF
+
+server.directories.data=${training_dir}/data
+server.directories.logs=${training_dir}/logs
+server.directories.run=${training_dir}/run
+dbms.security.auth_enabled=false
+EOF
+
+if [ -x "${NEO4J_HOME}/bin/neo4j" ] && ! train_neo4j; then
+    echo >&2 "Could not build the JVM class data cache for neo4j."
+    cat >&2 "${training_dir}/logs/neo4j.log" 2>/dev/null || true
+    exit 1
+fi
+if ! train_neo4j_admin; then
+    echo >&2 "Could not build the JVM class data cache for neo4j-admin."
+    exit 1
+fi
+for launcher in neo4j neo4j-admin; do
+    if [ "${launcher}" == "neo4j" ] && [ ! -x "${NEO4J_HOME}/bin/neo4j" ]; then
+        continue
+    fi
+    if ! compgen -G "${cache_dir}/${launcher}.*" > /dev/null; then
+        echo >&2 "The JVM did not write a class data cache for ${launcher} to ${cache_dir}."
+        exit 1
+    fi
+done
+
+cp -p "${training_dir}/neo4j.conf.orig" "${conf_file}"
+rm -rf "${training_dir}"
+chmod 755 "${cache_dir}"
+find "${cache_dir}" -type f -exec chmod 644 {} +
+ls -l "${cache_dir}"
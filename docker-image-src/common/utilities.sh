@@ -34,6 +34,192 @@ function is_writable
     ${exec_cmd} test -w "${1}"
 }
 
+function container_cpu_count
+{
+    # The number of CPUs available to the container, taking any cgroup CPU quota into account.
+    local _cpus _quota="max" _period=100000
+    _cpus=$(nproc)
+    if [[ -r /sys/fs/cgroup/cpu.max ]]; then
+        read -r _quota _period < /sys/fs/cgroup/cpu.max
+    elif [[ -r /sys/fs/cgroup/cpu/cpu.cfs_quota_us ]]; then
+        _quota=$(< /sys/fs/cgroup/cpu/cpu.cfs_quota_us)
+        _period=$(< /sys/fs/cgroup/cpu/cpu.cfs_period_us)
+    fi
+    if [[ "${_quota}" != "max" ]] && [[ "${_quota}" -gt 0 ]]; then
+        local _quota_cpus=$(( (_quota + _period - 1) / _period ))
+        if [[ ${_quota_cpus} -lt ${_cpus} ]]; then
+            _cpus=${_quota_cpus}
+        fi
+    fi
+    echo "${_cpus}"
+}
+
+function java_major_version
+{
+    # The major version of the JDK, read from its release file so that no JVM has to be started.
+    # Prints nothing if the version cannot be found.
+    local _java_home="${JAVA_HOME:-}"
+    # some images set JAVA_HOME to where java is linked from, e.g. /usr, rather than to the JDK itself.
+    if [[ ! -f "${_java_home}/release" ]] && command -v java > /dev/null; then
+        _java_home="$(dirname "$(dirname "$(readlink -f "$(command -v java)")")")"
+    fi
+    if [[ -f "${_java_home}/release" ]]; then
+        sed -n 's/^JAVA_VERSION="\([0-9]*\).*/\1/p' "${_java_home}/release"
+    fi
+}
+
+function transparent_huge_pages_mode
+{
+    # The host's transparent huge pages mode: always, madvise or never.
+    # Prints nothing if the kernel does not have transparent huge pages or does not show them to the container.
+    local _thp_file=/sys/kernel/mm/transparent_hugepage/enabled
+    if [[ -r "${_thp_file}" ]] && [[ "$(< "${_thp_file}")" =~ \[([a-z]+)\] ]]; then
+        echo "${BASH_REMATCH[1]}"
+    fi
+}
+
+function jvm_cache_options
+{
+    # The JVM options that use the class data cache made for the given launcher (neo4j or neo4j-admin)
+    # by build-jvm-cache.sh when the image was built. Prints nothing if the cache cannot be used.
+    # The JVM checks the cache against its class path and options itself and carries on without it if they differ,
+    # so that check is kept quiet unless debugging. Plugins change the class path, so the cache is not used with them.
+    local _cache_base="${NEO4J_HOME}/jvm-cache/${1}"
+    if [[ "${NEO4J_JVM_CACHE:-true}" != "true" ]]; then
+        return 0
+    fi
+    local _plugins_dir
+    for _plugins_dir in "${NEO4J_HOME}/plugins" /plugins; do
+        if compgen -G "${_plugins_dir}/*.jar" > /dev/null; then
+            return 0
+        fi
+    done
+    local _options=()
+    if [[ -f "${_cache_base}.aot" ]]; then
+        _options+=("-XX:AOTCache=${_cache_base}.aot")
+        debugging_enabled || _options+=("-Xlog:aot*=off")
+    elif [[ -f "${_cache_base}.jsa" ]]; then
+        _options+=("-XX:SharedArchiveFile=${_cache_base}.jsa")
+    else
+        return 0
+    fi
+    debugging_enabled || _options+=("-Xlog:cds*=off")
+    echo "${_options[@]}"
+}
+
+function neo4j_admin_java_opts
+{
+    # The JAVA_OPTS to run neo4j-admin with so that it uses the class data cache from the image.
+    # Prints nothing if JAVA_OPTS should be left as it is. neo4j-admin ignores HEAP_SIZE when JAVA_OPTS is set,
+    # and JAVA_OPTS from the user could already choose a cache, so the cache is only added when neither is affected.
+    if [[ -n "${HEAP_SIZE:-}" && -z "${JAVA_OPTS:-}" ]] || [[ "${JAVA_OPTS:-}" =~ -Xshare|AOTCache|SharedArchiveFile ]]; then
+        return 0
+    fi
+    local _cache_options
+    _cache_options="$(jvm_cache_options neo4j-admin)"
+    if [[ -n "${_cache_options}" ]]; then
+        echo "${JAVA_OPTS:+${JAVA_OPTS} }${_cache_options}"
+    fi
+}
+
+function neo4j_server_pid
+{
+    # The PID of the neo4j server JVM. Prints nothing if neo4j is not running.
+    # The neo4j script starts the server in a JVM of its own, so this looks for the server's entry point class,
+    # e.g. org.neo4j.server.CommunityEntryPoint or com.neo4j.server.enterprise.EnterpriseEntryPoint.
+    local _proc
+    for _proc in /proc/[0-9]*; do
+        if [[ "$(tr '\0' ' ' < "${_proc}/cmdline" 2>/dev/null)" =~ ^[^\ ]*java\ .*\.server\.([a-z]+\.)*[A-Za-z]*EntryPoint ]]; then
+            echo "${_proc#/proc/}"
+            return 0
+        fi
+    done
+}
+
+function run_jcmd
+{
+    # Runs a jcmd diagnostic command against the JVM with the given PID, as the user that the JVM runs as,
+    # since the JVM only accepts attaches from its own user. Some images only have the jcmd module and not its launcher.
+    local _pid=${1}
+    shift
+    local _jcmd=(jcmd)
+    if ! command -v jcmd > /dev/null; then
+        _jcmd=(java -m jdk.jcmd/sun.tools.jcmd.JCmd)
+    fi
+    if running_as_root && [[ "$(stat -c %u "/proc/${_pid}")" != "0" ]]; then
+        su-exec "$(stat -c %u:%g "/proc/${_pid}")" "${_jcmd[@]}" "${_pid}" "$@"
+    else
+        "${_jcmd[@]}" "${_pid}" "$@"
+    fi
+}
+
+function prepare_diagnostics_destination
+{
+    # Makes sure that the JVM with the given PID can write diagnostics to the given folder.
+    # The files are written by the JVM itself, so it is the JVM's user that needs to be able to write there.
+    local _destination=${1}
+    local _pid=${2}
+    if running_as_root; then
+        local _jvm_user
+        _jvm_user="$(stat -c %u:%g "/proc/${_pid}")"
+        if ! su-exec "${_jvm_user}" test -w "${_destination}"; then
+            debug_msg "reowning ${_destination} to ${_jvm_user}"
+            chown "${_jvm_user}" "${_destination}"
+        fi
+    elif [[ ! -w "${_destination}" ]]; then
+        print_permissions_advice_and_fail "${_destination}" "$(id -u)" "$(id -g)"
+    fi
+}
+
+function container_memory_limit
+{
+    # The container's memory limit in bytes, from cgroup v2 or v1. Prints nothing if the container has no memory limit.
+    local _limit=""
+    if [[ -r /sys/fs/cgroup/memory.max ]]; then
+        _limit=$(< /sys/fs/cgroup/memory.max)
+    elif [[ -r /sys/fs/cgroup/memory/memory.limit_in_bytes ]]; then
+        _limit=$(< /sys/fs/cgroup/memory/memory.limit_in_bytes)
+    fi
+    # cgroup v1 reports "no limit" as a very large number, so limits above the host's memory are ignored too.
+    local _host_memory=$(( $(awk '/^MemTotal:/ {print $2}' /proc/meminfo) * 1024 ))
+    if [[ "${_limit}" =~ ^[0-9]+$ ]] && [[ ${_limit} -lt ${_host_memory} ]]; then
+        echo "${_limit}"
+    fi
+}
+
+function run_in_background
+{
+    # Starts a command in the background so that other startup work can happen at the same time.
+    # The command's output is held back until join_background is called with the same job name,
+    # so that messages are printed in the same order as if the command had been run in the foreground.
+    local _job=${1}
+    shift
+    : ${_background_jobs_dir:="$(mktemp -d)"}
+    local _job_files="${_background_jobs_dir}/${_job}"
+    (
+        set +e
+        ( set -e; "$@" ) > "${_job_files}.out" 2> "${_job_files}.err"
+        echo $? > "${_job_files}.status"
+    ) &
+    echo $! > "${_job_files}.pid"
+}
+
+function join_background
+{
+    # Waits for a job started with run_in_background, prints its output and returns its exit code.
+    # Does nothing if the job was never started or has already been joined.
+    local _job_files="${_background_jobs_dir:-}/${1}"
+    if [[ ! -f "${_job_files}.pid" ]]; then
+        return 0
+    fi
+    wait "$(< "${_job_files}.pid")" || true
+    cat "${_job_files}.out"
+    cat >&2 "${_job_files}.err"
+    local _status=$(< "${_job_files}.status")
+    rm -f "${_job_files}".*
+    return ${_status}
+}
+
 function print_permissions_advice_and_fail
 {
     local _directory=${1}
@@ -52,3 +238,60 @@ If the folder is owned by the current user, this can be done by adding this flag
 }
 
 
+
+function startup_profiling_enabled
+{
+    test "${NEO4J_STARTUP_PROFILE:-false}" = "true"
+}
+
+function profile_phase
+{
+    # Finishes timing the current startup phase, if there is one, and starts timing the phase given as an argument.
+    # Does nothing unless NEO4J_STARTUP_PROFILE=true.
+    if ! startup_profiling_enabled; then
+        return 0
+    fi
+    local _now_micros=${EPOCHREALTIME/[.,]/}
+    if [[ -z "${_profile_start_micros:-}" ]]; then
+        _profile_start_micros=${_now_micros}
+        _profile_phase_names=()
+        _profile_phase_micros=()
+    fi
+    if [[ -n "${_profile_current_phase:-}" ]]; then
+        _profile_phase_names+=("${_profile_current_phase}")
+        _profile_phase_micros+=($(( _now_micros - _profile_current_phase_start )))
+    fi
+    _profile_current_phase="${1:-}"
+    _profile_current_phase_start=${_now_micros}
+}
+
+function micros_as_millis
+{
+    printf "%d.%03d" $(( ${1} / 1000 )) $(( ${1} % 1000 ))
+}
+
+function profile_finish
+{
+    # Finishes timing the startup phases, writes the timings as json to the given file and prints a summary line.
+    if ! startup_profiling_enabled; then
+        return 0
+    fi
+    local _profile_file=${1}
+    local _entrypoint=${2}
+    profile_phase ""
+    local _total_micros=$(( ${EPOCHREALTIME/[.,]/} - _profile_start_micros ))
+    local _json _summary="" _i
+    _json="{\"entrypoint\":\"${_entrypoint}\",\"total_ms\":$(micros_as_millis ${_total_micros}),\"phases\":["
+    for _i in "${!_profile_phase_names[@]}"; do
+        if [[ ${_i} -gt 0 ]]; then
+            _json+=","
+        fi
+        _json+="{\"name\":\"${_profile_phase_names[${_i}]}\",\"duration_ms\":$(micros_as_millis ${_profile_phase_micros[${_i}]})}"
+        _summary+=" ${_profile_phase_names[${_i}]}=$(( ${_profile_phase_micros[${_i}]} / 1000 ))ms"
+    done
+    _json+="]}"
+    echo "Startup profile:${_summary} total=$(( _total_micros / 1000 ))ms"
+    if ! echo "${_json}" > "${_profile_file}"; then
+        echo >&2 "Warning: could not write startup profile to ${_profile_file}"
+    fi
+}
@@ -6,8 +6,11 @@ import static org.testcontainers.shaded.org.awaitility.Awaitility.await;
 
 import com.github.dockerjava.api.command.KillContainerCmd;
 import com.github.dockerjava.api.command.StopContainerCmd;
+import com.github.dockerjava.api.model.ChangeLog;
+import com.neo4j.docker.utils.ContainerRestart;
 import com.neo4j.docker.utils.DatabaseIO;
 import com.neo4j.docker.utils.Neo4jVersion;
+import com.neo4j.docker.utils.StartupProfile;
 import com.neo4j.docker.utils.TemporaryFolderManager;
 import com.neo4j.docker.utils.TestSettings;
 import com.neo4j.docker.utils.WaitStrategies;
@@ -265,6 +268,145 @@ public class TestBasic {
         }
     }
 
+    @Test
+    void testRestartDoesNotChownNeo4jHomeAgain() {
+        Assumptions.assumeTrue(
+                TestSettings.NEO4J_VERSION.isCalver(), "NEO4J_HOME ownership stamp is only in calver images");
+        try (GenericContainer container = createBasicContainer()) {
+            container
+                    .withEnv("NEO4J_AUTH", "none")
+                    .withEnv("NEO4J_DEBUG", "yes")
+                    .waitingFor(waitForNeo4jReady("none"));
+            container.start();
+            ContainerRestart.restartAndWaitForNeo4jStarted(container, STARTUP_TIMEOUT_DURATION);
+
+            Assertions.assertEquals(
+                    1,
+                    ContainerRestart.countInLogs(container, "chowning files in /var/lib/neo4j"),
+                    "NEO4J_HOME ownership should only be checked on the first start");
+            Assertions.assertEquals(
+                    1,
+                    ContainerRestart.countInLogs(container, "Ownership and permissions of /var/lib/neo4j match"),
+                    "NEO4J_HOME ownership was not skipped on the second start");
+        }
+    }
+
+    @Test
+    void testFirstStartDoesNotChangeFilesThatComeWithTheImage() {
+        Assumptions.assumeTrue(
+                TestSettings.NEO4J_VERSION.isCalver(), "NEO4J_HOME ownership stamp is only in calver images");
+        try (GenericContainer container = createBasicContainer()) {
+            container.withEnv("NEO4J_AUTH", "none").waitingFor(waitForNeo4jReady("none"));
+            container.start();
+
+            // any file that was chowned or chmodded is copied into the container's writable layer and shows up here
+            List<String> changedImageFiles =
+                    container.getDockerClient().containerDiffCmd(container.getContainerId()).exec().stream()
+                            .map(ChangeLog::getPath)
+                            .filter(path ->
+                                    path.matches("/var/lib/neo4j/(bin|jvm-cache|labs|lib|licenses|products)/.*"))
+                            .toList();
+            Assertions.assertEquals(
+                    List.of(), changedImageFiles, "Starting a new container changed files that come with the image");
+        }
+    }
+
+    @Test
+    void testRestartDoesNotStartExtraJVMs() throws IOException {
+        Assumptions.assumeTrue(
+                TestSettings.NEO4J_VERSION.isCalver(), "Skipping extra JVMs on restart is only in calver images");
+        String password = "verysecretpassword";
+        try (GenericContainer container = createBasicContainer()) {
+            container
+                    .withEnv("NEO4J_AUTH", "neo4j/" + password)
+                    .withEnv("NEO4J_DEBUG", "yes")
+                    .withEnv(StartupProfile.ENV_NAME, "true")
+                    .waitingFor(waitForNeo4jReady(password));
+            Path logsMount = temporaryFolderManager.createFolderAndMountAsVolume(container, "/logs");
+            container.start();
+            // the entrypoint's own timings leave out shutting down and starting neo4j, which the restart does not
+            // change
+            Duration firstStart = StartupProfile.readFromLogsFolder(logsMount).getTotal();
+            ContainerRestart.restartAndWaitForNeo4jStarted(container, STARTUP_TIMEOUT_DURATION);
+            Duration restart = StartupProfile.readFromLogsFolder(logsMount).getTotal();
+            log.info("Entrypoint time: first start {}ms, restart {}ms", firstStart.toMillis(), restart.toMillis());
+
+            Assertions.assertEquals(
+                    1,
+                    ContainerRestart.countInLogs(container, "Running neo4j-admin dbms set-initial-password"),
+                    "set-initial-password should only run on the first start");
+            Assertions.assertEquals(
+                    1,
+                    ContainerRestart.countInLogs(container, "Reusing cached neo4j run command"),
+                    "neo4j console --dry-run should not run on the second start");
+            Assertions.assertTrue(
+                    restart.compareTo(firstStart.multipliedBy(3).dividedBy(4)) <= 0,
+                    "The entrypoint was not at least 25% faster on restart. First start: " + firstStart.toMillis()
+                            + "ms, restart: " + restart.toMillis() + "ms");
+        }
+    }
+
+    @Test
+    void testSetInitialPasswordSkippedWhenCredentialsExist() throws IOException {
+        Assumptions.assumeTrue(
+                TestSettings.NEO4J_VERSION.isCalver(), "Skipping set-initial-password is only in calver images");
+        String password = "verysecretpassword";
+        Path dataMount = temporaryFolderManager.createFolder("data");
+        try (GenericContainer container = createBasicContainer()) {
+            container.withEnv("NEO4J_AUTH", "neo4j/" + password).waitingFor(waitForNeo4jReady(password));
+            temporaryFolderManager.mountHostFolderAsVolume(container, dataMount, "/data");
+            container.start();
+        }
+        try (GenericContainer container = createBasicContainer()) {
+            container
+                    .withEnv("NEO4J_AUTH", "neo4j/" + password)
+                    .withEnv("NEO4J_DEBUG", "yes")
+                    .waitingFor(waitForNeo4jReady(password));
+            temporaryFolderManager.mountHostFolderAsVolume(container, dataMount, "/data");
+            container.start();
+            Assertions.assertEquals(
+                    1,
+                    ContainerRestart.countInLogs(container, "Credentials already exist in /data"),
+                    "set-initial-password was not skipped when /data already had credentials");
+        }
+    }
+
+    @Test
+    void testStartupProfileIsWritten() throws IOException {
+        Assumptions.assumeTrue(TestSettings.NEO4J_VERSION.isCalver(), "Startup profiling is only in calver images");
+        try (GenericContainer container = createBasicContainer()) {
+            container
+                    .withEnv("NEO4J_AUTH", "none")
+                    .withEnv(StartupProfile.ENV_NAME, "true")
+                    .waitingFor(waitForNeo4jReady("none"));
+            Path logsMount = temporaryFolderManager.createFolderAndMountAsVolume(container, "/logs");
+            container.start();
+
+            Assertions.assertTrue(
+                    container.getLogs(OutputFrame.OutputType.STDOUT).contains("Startup profile:"),
+                    "Did not print a startup profile summary");
+            StartupProfile profile = StartupProfile.readFromLogsFolder(logsMount);
+            log.info("{}", profile);
+            Assertions.assertEquals("coredb", profile.getEntrypoint());
+            for (String phase : List.of(
+                    "setup",
+                    "secrets",
+                    "license",
+                    "mount-permissions",
+                    "conf-copy",
+                    "plugins",
+                    "config",
+                    "password",
+                    "dry-run")) {
+                Assertions.assertNotNull(profile.getPhase(phase), "Startup profile is missing phase " + phase);
+            }
+            // nothing except the dry run should be anywhere near this slow
+            Assertions.assertTrue(
+                    profile.getPhase("config").compareTo(Duration.ofSeconds(5)) < 0,
+                    "Applying configuration took too long: " + profile.getPhase("config"));
+        }
+    }
+
     @Test
     void testExtensionScriptIsExecuted() throws IOException {
         Path scriptFolder = temporaryFolderManager.createFolder("extension_script");
@@ -0,0 +1,235 @@
+package com.neo4j.docker.coredb;
+
+import com.neo4j.docker.coredb.configurations.ConfigRenderer;
+import com.neo4j.docker.utils.ContainerRestart;
+import com.neo4j.docker.utils.DatabaseIO;
+import com.neo4j.docker.utils.SetContainerUser;
+import com.neo4j.docker.utils.TemporaryFolderManager;
+import com.neo4j.docker.utils.TestSettings;
+import com.neo4j.docker.utils.WaitStrategies;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testcontainers.containers.Container;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.output.Slf4jLogConsumer;
+
+public class TestJfr {
+    private final Logger log = LoggerFactory.getLogger(TestJfr.class);
+
+    @RegisterExtension
+    public static TemporaryFolderManager temporaryFolderManager = new TemporaryFolderManager();
+
+    @BeforeAll
+    static void checkVersion() {
+        Assumptions.assumeTrue(
+                TestSettings.NEO4J_VERSION.isCalver(), "Continuous JFR recording is only in calver images");
+    }
+
+    private GenericContainer createContainer(boolean asCurrentUser) {
+        GenericContainer container = new GenericContainer(TestSettings.IMAGE_ID)
+                .withEnv("NEO4J_AUTH", "none")
+                .withEnv("NEO4J_ACCEPT_LICENSE_AGREEMENT", "yes")
+                .withEnv("NEO4J_JFR", "continuous")
+                .withExposedPorts(7474, 7687)
+                .withLogConsumer(new Slf4jLogConsumer(log))
+                .waitingFor(WaitStrategies.waitForBoltReady());
+        if (asCurrentUser) {
+            SetContainerUser.nonRootUser(container);
+        }
+        return container;
+    }
+
+    private Container.ExecResult runDump(GenericContainer container, String... args) throws Exception {
+        String[] command = new String[args.length + 1];
+        command[0] = "neo4j-jfr-dump";
+        System.arraycopy(args, 0, command, 1, args.length);
+        Container.ExecResult execResult = container.execInContainer(command);
+        // log exec results, because the results of an exec don't get logged automatically.
+        log.info(execResult.getStdout());
+        log.warn(execResult.getStderr());
+        return execResult;
+    }
+
+    private void verifyContainsRecording(Path folder) throws Exception {
+        List<Path> recordings;
+        try (var files = Files.list(folder)) {
+            recordings = files.filter(file -> file.getFileName().toString().matches("neo4j-[0-9TZ]+\\.jfr"))
+                    .toList();
+        }
+        Assertions.assertEquals(1, recordings.size(), "Expected one JFR recording in " + folder);
+        Assertions.assertTrue(Files.size(recordings.get(0)) > 0, "The JFR recording is empty");
+    }
+
+    private static List<String> flightRecorderOptions(String neo4jConf) {
+        String prefix = "server.jvm.additional=-XX:FlightRecorderOptions=";
+        return neo4jConf
+                .lines()
+                .filter(line -> line.startsWith(prefix))
+                .map(line -> line.substring(prefix.length()))
+                .toList();
+    }
+
+    @Test
+    void testRecordingIsConfiguredInLogs() throws Exception {
+        String neo4jConf;
+        try (GenericContainer container = createContainer(false)) {
+            neo4jConf = ConfigRenderer.renderConfFile(container, temporaryFolderManager, "neo4j.conf");
+        }
+        Assertions.assertTrue(
+                neo4jConf.matches("(?s).*server\\.jvm\\.additional=-XX:StartFlightRecording=name=continuous,"
+                        + "[^\\n]*maxsize=[^\\n]*maxage=[^\\n]*filename=/logs/jfr/.*"),
+                "A bounded continuous recording into /logs/jfr was not configured");
+        List<String> recorderOptions = flightRecorderOptions(neo4jConf);
+        Assertions.assertEquals(
+                1, recorderOptions.size(), "There should be one -XX:FlightRecorderOptions:\n" + neo4jConf);
+        Assertions.assertTrue(
+                recorderOptions.get(0).endsWith(",repository=/logs/jfr/repository")
+                        || recorderOptions.get(0).equals("repository=/logs/jfr/repository"),
+                "The recording repository is not in /logs/jfr: " + recorderOptions.get(0));
+    }
+
+    @Test
+    void testRecorderOptionsFromUserAreKept() throws Exception {
+        String neo4jConf;
+        try (GenericContainer container = createContainer(false)
+                .withEnv("NEO4J_server_jvm_additional", "-XX:FlightRecorderOptions=stackdepth=512")) {
+            neo4jConf = ConfigRenderer.renderConfFile(container, temporaryFolderManager, "neo4j.conf");
+        }
+        Assertions.assertEquals(
+                List.of("stackdepth=512,repository=/logs/jfr/repository"),
+                flightRecorderOptions(neo4jConf),
+                "The repository should be added to the recorder options of the user");
+    }
+
+    @Test
+    void testRecorderOptionsAreTheSameWhenConfigIsRenderedAgain() throws Exception {
+        try (GenericContainer container = createContainer(false)) {
+            Path pluginsMount = temporaryFolderManager.createFolderAndMountAsVolume(container, "/plugins");
+            container.start();
+            List<String> firstRecorderOptions = flightRecorderOptions(
+                    container.execInContainer("cat", "conf/neo4j.conf").getStdout());
+
+            // a change to the mounted /plugins folder makes the entrypoint render the config again on restart.
+            Files.writeString(pluginsMount.resolve("README.txt"), "not a plugin");
+            ContainerRestart.restartAndWaitForNeo4jStarted(container, Duration.ofSeconds(180));
+            Assertions.assertEquals(
+                    0,
+                    ContainerRestart.countInLogs(container, "Configuration has not changed since the last start"),
+                    "Configuration should have been rendered again after /plugins changed");
+            Assertions.assertEquals(
+                    firstRecorderOptions,
+                    flightRecorderOptions(
+                            container.execInContainer("cat", "conf/neo4j.conf").getStdout()),
+                    "The recorder options changed when the config was rendered again");
+        }
+    }
+
+    @Test
+    void testRecordingGoesToMetricsWhenMounted() throws Exception {
+        String neo4jConf;
+        try (GenericContainer container = createContainer(false)) {
+            temporaryFolderManager.createFolderAndMountAsVolume(container, "/metrics");
+            neo4jConf = ConfigRenderer.renderConfFile(container, temporaryFolderManager, "neo4j.conf");
+        }
+        List<String> recorderOptions = flightRecorderOptions(neo4jConf);
+        Assertions.assertEquals(
+                1, recorderOptions.size(), "There should be one -XX:FlightRecorderOptions:\n" + neo4jConf);
+        Assertions.assertTrue(
+                recorderOptions.get(0).contains("repository=/metrics/jfr/repository"),
+                "The recording should go to /metrics when it is mounted");
+    }
+
+    @ParameterizedTest(name = "ascurrentuser_{0}")
+    @ValueSource(booleans = {true, false})
+    void testDumpRecordingToLogs(boolean asCurrentUser) throws Exception {
+        try (GenericContainer container = createContainer(asCurrentUser)) {
+            Path logsMount = temporaryFolderManager.createFolderAndMountAsVolume(container, "/logs");
+            container.start();
+            new DatabaseIO(container).putInitialDataIntoContainer("neo4j", "none");
+            Container.ExecResult execResult = runDump(container);
+            Assertions.assertEquals(0, execResult.getExitCode(), "neo4j-jfr-dump failed");
+            verifyContainsRecording(logsMount.resolve("jfr"));
+        }
+    }
+
+    @ParameterizedTest(name = "ascurrentuser_{0}")
+    @ValueSource(booleans = {true, false})
+    void testDumpRecordingToAnyMountedLocation(boolean asCurrentUser) throws Exception {
+        try (GenericContainer container = createContainer(asCurrentUser)) {
+            temporaryFolderManager.createFolderAndMountAsVolume(container, "/logs");
+            Path dumpMount = temporaryFolderManager.createFolderAndMountAsVolume(container, "/dumps");
+            container.start();
+            Container.ExecResult execResult = runDump(container, "--to-path=/dumps");
+            Assertions.assertEquals(0, execResult.getExitCode(), "neo4j-jfr-dump failed");
+            verifyContainsRecording(dumpMount);
+        }
+    }
+
+    @Test
+    void testDumpRecordingFromEnterpriseServer() throws Exception {
+        // the enterprise server has a different entry point class to community, which the helper scripts must find.
+        Assumptions.assumeTrue(
+                TestSettings.EDITION == TestSettings.Edition.ENTERPRISE,
+                "Enterprise entry point is only in enterprise");
+        try (GenericContainer container = createContainer(false)) {
+            Path logsMount = temporaryFolderManager.createFolderAndMountAsVolume(container, "/logs");
+            container.start();
+            Container.ExecResult execResult = runDump(container);
+            Assertions.assertEquals(0, execResult.getExitCode(), "neo4j-jfr-dump did not find the enterprise server");
+            verifyContainsRecording(logsMount.resolve("jfr"));
+        }
+    }
+
+    @Test
+    void testDumpToUnwritableLocationFails() throws Exception {
+        try (GenericContainer container = createContainer(true)) {
+            temporaryFolderManager.createFolderAndMountAsVolume(container, "/logs");
+            Path dumpMount = temporaryFolderManager.createFolderAndMountAsVolume(container, "/dumps");
+            container.start();
+            dumpMount.toFile().setWritable(false, false);
+            Container.ExecResult execResult = runDump(container, "--to-path", "/dumps");
+            Assertions.assertNotEquals(0, execResult.getExitCode(), "neo4j-jfr-dump should fail");
+            Assertions.assertTrue(
+                    execResult.getStderr().contains("Folder /dumps is not accessible"),
+                    "Did not get the file permissions advice:\n" + execResult.getStderr());
+        }
+    }
+
+    @Test
+    void testUnwritableLogsFailsStartup() throws Exception {
+        try (GenericContainer container = createContainer(true)) {
+            Path logsMount = temporaryFolderManager.createFolderAndMountAsVolume(container, "/logs");
+            Files.createDirectory(logsMount.resolve("jfr"));
+            logsMount.resolve("jfr").toFile().setWritable(false, false);
+            container.withCommand("render-config", "neo4j.conf");
+            WaitStrategies.waitUntilContainerFinished(container, Duration.ofSeconds(30));
+            container.start();
+            Assertions.assertTrue(
+                    container.getLogs().contains("Folder /logs/jfr is not accessible"),
+                    "Did not get the file permissions advice for /logs/jfr");
+        }
+    }
+
+    @Test
+    void testDumpWithoutRecordingFails() throws Exception {
+        try (GenericContainer container = createContainer(false).withEnv("NEO4J_JFR", "off")) {
+            container.start();
+            Container.ExecResult execResult = runDump(container);
+            Assertions.assertNotEquals(0, execResult.getExitCode(), "neo4j-jfr-dump should fail without NEO4J_JFR");
+            Assertions.assertTrue(
+                    execResult.getStderr().contains("NEO4J_JFR=continuous"),
+                    "Did not explain how to turn on the recording:\n" + execResult.getStderr());
+        }
+    }
+}
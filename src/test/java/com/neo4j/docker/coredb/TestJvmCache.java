@@ -0,0 +1,116 @@
+package com.neo4j.docker.coredb;
+
+import com.neo4j.docker.coredb.configurations.ConfigRenderer;
+import com.neo4j.docker.utils.Measurements;
+import com.neo4j.docker.utils.TemporaryFolderManager;
+import com.neo4j.docker.utils.TestSettings;
+import com.neo4j.docker.utils.WaitStrategies;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.output.OutputFrame;
+import org.testcontainers.containers.output.Slf4jLogConsumer;
+
+public class TestJvmCache {
+    private final Logger log = LoggerFactory.getLogger(TestJvmCache.class);
+    private static final String CACHE_DIR = "/var/lib/neo4j/jvm-cache";
+
+    @RegisterExtension
+    public static TemporaryFolderManager temporaryFolderManager = new TemporaryFolderManager();
+
+    @BeforeAll
+    static void checkVersion() {
+        Assumptions.assumeTrue(
+                TestSettings.NEO4J_VERSION.isCalver(), "JVM class data caches are only built into calver images");
+    }
+
+    private GenericContainer createContainer() {
+        return new GenericContainer(TestSettings.IMAGE_ID)
+                .withEnv("NEO4J_AUTH", "none")
+                .withEnv("NEO4J_ACCEPT_LICENSE_AGREEMENT", "yes")
+                .withExposedPorts(7474, 7687)
+                .withLogConsumer(new Slf4jLogConsumer(log));
+    }
+
+    private Duration timeToBoltReady(String jvmCache) {
+        try (GenericContainer container =
+                createContainer().withEnv("NEO4J_JVM_CACHE", jvmCache).waitingFor(WaitStrategies.waitForBoltReady())) {
+            Instant startTime = Instant.now();
+            container.start();
+            Duration startup = Duration.between(startTime, Instant.now());
+            log.info("Time to ready with NEO4J_JVM_CACHE={}: {}ms", jvmCache, startup.toMillis());
+            return startup;
+        }
+    }
+
+    @Test
+    void testCacheIsBuiltIntoImage() {
+        String caches;
+        try (GenericContainer container = createContainer().withCommand("ls", CACHE_DIR)) {
+            WaitStrategies.waitUntilContainerFinished(container, Duration.ofSeconds(30));
+            container.start();
+            caches = container.getLogs(OutputFrame.OutputType.STDOUT);
+        }
+        Assertions.assertTrue(
+                caches.matches("(?s).*\\bneo4j\\.(aot|jsa)\\b.*"),
+                "No JVM class data cache for neo4j in the image. Found:\n" + caches);
+        Assertions.assertTrue(
+                caches.matches("(?s).*\\bneo4j-admin\\.(aot|jsa)\\b.*"),
+                "No JVM class data cache for neo4j-admin in the image. Found:\n" + caches);
+    }
+
+    @Test
+    void testServerUsesCache() throws Exception {
+        String neo4jConf;
+        try (GenericContainer container = createContainer()) {
+            neo4jConf = ConfigRenderer.renderConfFile(container, temporaryFolderManager, "neo4j.conf");
+        }
+        Assertions.assertTrue(
+                neo4jConf.matches("(?s).*server\\.jvm\\.additional=-XX:(AOTCache|SharedArchiveFile)=" + CACHE_DIR
+                        + "/neo4j\\.(aot|jsa).*"),
+                "neo4j is not configured to use the JVM class data cache");
+    }
+
+    @Test
+    void testCacheIsNotUsedWithPlugins() throws Exception {
+        String neo4jConf;
+        try (GenericContainer container = createContainer()) {
+            Path plugins = temporaryFolderManager.createFolderAndMountAsVolume(container, "/plugins");
+            Files.createFile(plugins.resolve("myplugin.jar"));
+            neo4jConf = ConfigRenderer.renderConfFile(container, temporaryFolderManager, "neo4j.conf");
+        }
+        Assertions.assertFalse(
+                neo4jConf.contains(CACHE_DIR),
+                "The JVM class data cache should not be used when plugins change the class path");
+    }
+
+    @Test
+    void testCacheCanBeDisabled() throws Exception {
+        String neo4jConf;
+        try (GenericContainer container = createContainer().withEnv("NEO4J_JVM_CACHE", "false")) {
+            neo4jConf = ConfigRenderer.renderConfFile(container, temporaryFolderManager, "neo4j.conf");
+        }
+        Assertions.assertFalse(neo4jConf.contains(CACHE_DIR), "The JVM class data cache was used when disabled");
+    }
+
+    @Test
+    @Tag("PerformanceTest")
+    void testCacheReducesStartupTime() throws Exception {
+        Duration withoutCache = Measurements.median(() -> timeToBoltReady("false"));
+        Duration withCache = Measurements.median(() -> timeToBoltReady("true"));
+        Assertions.assertTrue(
+                Measurements.isSmallerByAtLeast(withCache.toMillis(), withoutCache.toMillis(), 0.05),
+                "Starting with the JVM class data cache was not at least 5% faster. With cache: " + withCache.toMillis()
+                        + "ms, without: " + withoutCache.toMillis() + "ms");
+    }
+}
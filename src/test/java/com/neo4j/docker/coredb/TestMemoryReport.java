@@ -0,0 +1,155 @@
+package com.neo4j.docker.coredb;
+
+import com.neo4j.docker.coredb.configurations.ConfigRenderer;
+import com.neo4j.docker.utils.DatabaseIO;
+import com.neo4j.docker.utils.SetContainerUser;
+import com.neo4j.docker.utils.TemporaryFolderManager;
+import com.neo4j.docker.utils.TestSettings;
+import com.neo4j.docker.utils.WaitStrategies;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testcontainers.containers.Container;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.output.OutputFrame;
+import org.testcontainers.containers.output.Slf4jLogConsumer;
+
+public class TestMemoryReport {
+    private final Logger log = LoggerFactory.getLogger(TestMemoryReport.class);
+
+    @RegisterExtension
+    public static TemporaryFolderManager temporaryFolderManager = new TemporaryFolderManager();
+
+    @BeforeAll
+    static void checkVersion() {
+        Assumptions.assumeTrue(TestSettings.NEO4J_VERSION.isCalver(), "neo4j-memory-report is only in calver images");
+    }
+
+    private GenericContainer createContainer(boolean asCurrentUser) {
+        GenericContainer container = new GenericContainer(TestSettings.IMAGE_ID)
+                .withEnv("NEO4J_AUTH", "none")
+                .withEnv("NEO4J_ACCEPT_LICENSE_AGREEMENT", "yes")
+                .withEnv("NEO4J_NMT", "summary")
+                .withExposedPorts(7474, 7687)
+                .withLogConsumer(new Slf4jLogConsumer(log))
+                .waitingFor(WaitStrategies.waitForBoltReady());
+        if (asCurrentUser) {
+            SetContainerUser.nonRootUser(container);
+        }
+        return container;
+    }
+
+    private String runReport(GenericContainer container, Path reportFolder, String... args) throws Exception {
+        String[] command = new String[args.length + 2];
+        command[0] = "neo4j-memory-report";
+        command[1] = "--to-path=/reports";
+        System.arraycopy(args, 0, command, 2, args.length);
+        Container.ExecResult execResult = container.execInContainer(command);
+        // log exec results, because the results of an exec don't get logged automatically.
+        log.info(execResult.getStdout());
+        log.warn(execResult.getStderr());
+        Assertions.assertEquals(0, execResult.getExitCode(), "neo4j-memory-report failed");
+
+        List<Path> reports;
+        try (var files = Files.list(reportFolder)) {
+            reports = files.filter(file -> file.getFileName().toString().matches("neo4j-memory-[0-9TZ]+\\.txt"))
+                    .toList();
+        }
+        Assertions.assertEquals(1, reports.size(), "Expected one memory report in " + reportFolder);
+        return Files.readString(reports.get(0));
+    }
+
+    @ParameterizedTest(name = "nmt_{0}")
+    @ValueSource(strings = {"summary", "detail"})
+    void testNmtJvmOptionIsSet(String mode) throws Exception {
+        String neo4jConf;
+        try (GenericContainer container = createContainer(false).withEnv("NEO4J_NMT", mode)) {
+            neo4jConf = ConfigRenderer.renderConfFile(container, temporaryFolderManager, "neo4j.conf");
+        }
+        Assertions.assertTrue(
+                neo4jConf.contains("server.jvm.additional=-XX:NativeMemoryTracking=" + mode),
+                "Native memory tracking was not turned on");
+    }
+
+    @Test
+    void testInvalidNmtValueFails() {
+        try (GenericContainer container = createContainer(false).withEnv("NEO4J_NMT", "full")) {
+            WaitStrategies.waitUntilContainerFinished(container, Duration.ofSeconds(30));
+            container.start();
+            Assertions.assertTrue(
+                    container.getLogs(OutputFrame.OutputType.STDERR).contains("Invalid value for NEO4J_NMT"),
+                    "Invalid NEO4J_NMT value did not give an error");
+        }
+    }
+
+    @ParameterizedTest(name = "ascurrentuser_{0}")
+    @ValueSource(booleans = {true, false})
+    void testReportHasAllMemorySections(boolean asCurrentUser) throws Exception {
+        try (GenericContainer container = createContainer(asCurrentUser)) {
+            Path reportFolder = temporaryFolderManager.createFolderAndMountAsVolume(container, "/reports");
+            container.start();
+            new DatabaseIO(container).putInitialDataIntoContainer("neo4j", "none");
+            String report = runReport(container, reportFolder);
+            for (String section : new String[] {
+                "cgroup memory", "neo4j process", "neo4j memory settings", "page cache", "JVM heap", "JVM native memory"
+            }) {
+                Assertions.assertTrue(report.contains("---- " + section), "Report has no " + section + " section");
+            }
+            Assertions.assertTrue(
+                    report.contains("In use (NMT Other"), "Report does not have the page cache memory from NMT");
+            Assertions.assertTrue(report.contains("Native Memory Tracking:"), "Report has no native memory summary");
+            Assertions.assertTrue(report.contains("VmRSS:"), "Report does not have the RSS of neo4j");
+        }
+    }
+
+    @Test
+    void testReportOnEnterpriseServer() throws Exception {
+        // the enterprise server has a different entry point class to community, which the helper scripts must find.
+        Assumptions.assumeTrue(
+                TestSettings.EDITION == TestSettings.Edition.ENTERPRISE,
+                "Enterprise entry point is only in enterprise");
+        try (GenericContainer container = createContainer(false)) {
+            Path reportFolder = temporaryFolderManager.createFolderAndMountAsVolume(container, "/reports");
+            container.start();
+            String report = runReport(container, reportFolder);
+            Assertions.assertTrue(report.contains("VmRSS:"), "Report does not have the RSS of the enterprise server");
+        }
+    }
+
+    @Test
+    void testReportDiffsSnapshots() throws Exception {
+        try (GenericContainer container = createContainer(false)) {
+            Path reportFolder = temporaryFolderManager.createFolderAndMountAsVolume(container, "/reports");
+            container.start();
+            String report = runReport(container, reportFolder, "--interval=5");
+            Assertions.assertTrue(report.contains("---- changes over 5 seconds"), "Report does not have the changes");
+            Assertions.assertTrue(report.contains("neo4j RSS:"), "Report does not have the change in RSS");
+            Assertions.assertTrue(
+                    report.lastIndexOf("Native Memory Tracking:") > report.indexOf("---- changes over"),
+                    "Report does not have a native memory diff");
+        }
+    }
+
+    @Test
+    void testReportWithoutNmtExplainsHowToTurnItOn() throws Exception {
+        try (GenericContainer container = createContainer(false).withEnv("NEO4J_NMT", "off")) {
+            Path reportFolder = temporaryFolderManager.createFolderAndMountAsVolume(container, "/reports");
+            container.start();
+            String report = runReport(container, reportFolder);
+            Assertions.assertTrue(report.contains("NEO4J_NMT=summary"), "Report did not say how to turn on NMT");
+            Assertions.assertTrue(report.contains("---- JVM heap"), "Report has no heap section without NMT");
+            Assertions.assertTrue(
+                    report.contains("In use: unknown"), "Report should not guess the page cache memory without NMT");
+        }
+    }
+}
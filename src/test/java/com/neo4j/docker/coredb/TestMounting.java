@@ -3,6 +3,7 @@ package com.neo4j.docker.coredb;
 import com.github.dockerjava.api.DockerClient;
 import com.github.dockerjava.api.command.CreateContainerCmd;
 import com.github.dockerjava.api.model.Bind;
+import com.neo4j.docker.utils.ContainerRestart;
 import com.neo4j.docker.utils.DatabaseIO;
 import com.neo4j.docker.utils.Neo4jVersion;
 import com.neo4j.docker.utils.SetContainerUser;
@@ -29,6 +30,7 @@ import org.junit.jupiter.params.provider.ValueSource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.testcontainers.DockerClientFactory;
+import org.testcontainers.containers.Container;
 import org.testcontainers.containers.ContainerLaunchException;
 import org.testcontainers.containers.GenericContainer;
 import org.testcontainers.containers.output.OutputFrame;
@@ -210,6 +212,115 @@ public class TestMounting {
         }
     }
 
+    @ParameterizedTest(name = "scanMode={0}")
+    @ValueSource(strings = {"first", "top-level"})
+    void testCanMountDataAndLogsFolderWithScanMode(String scanMode) throws IOException {
+        Assumptions.assumeTrue(TestSettings.NEO4J_VERSION.isCalver(), "Mount scan modes are only in calver images");
+
+        try (GenericContainer container = setupBasicContainer(false, false)) {
+            container.withEnv("NEO4J_MOUNT_SCAN_MODE", scanMode).withEnv("NEO4J_MOUNT_SCAN_TIMEOUT", "60");
+            Path dataMount = temporaryFolderManager.createFolderAndMountAsVolume(container, "/data");
+            Path logsMount = temporaryFolderManager.createFolderAndMountAsVolume(container, "/logs");
+            container.start();
+
+            verifyDataFolderContentsArePresentOnHost(dataMount, false);
+            verifyLogsFolderContentsArePresentOnHost(logsMount, false);
+        }
+    }
+
+    @Test
+    void testReownDataFolderReportsProgress() throws Exception {
+        Assumptions.assumeTrue(
+                TestSettings.NEO4J_VERSION.isCalver(), "Parallel re-owning of mounts is only in calver images");
+
+        try (GenericContainer container = setupBasicContainer(false, false)) {
+            container.withEnv("NEO4J_REOWN_PROGRESS_INTERVAL", "1");
+            Path dataMount = temporaryFolderManager.createFolderAndMountAsVolume(container, "/data");
+            // pre-populate the data folder with files owned by the current user, so they need re-owning
+            for (String subfolder : new String[] {"databases/neo4j", "databases/system", "transactions/neo4j"}) {
+                Path folder = Files.createDirectories(dataMount.resolve(subfolder));
+                for (int i = 0; i < 100; i++) {
+                    Files.createFile(folder.resolve("file" + i));
+                }
+            }
+            container.start();
+
+            String logs = container.getLogs(OutputFrame.OutputType.STDOUT);
+            Assertions.assertTrue(
+                    logs.contains("Changing owner of 3 subfolders of /data"),
+                    "Did not report re-owning subfolders of /data");
+            Container.ExecResult status = container.execInContainer("cat", "/var/lib/neo4j/run/docker/reown.status");
+            Assertions.assertEquals(0, status.getExitCode(), "Re-owning /data did not write a status file");
+            Assertions.assertTrue(
+                    status.getStdout().contains("subfolders_done=3 subfolders_total=3"),
+                    "Status file did not record all subfolders as done: " + status.getStdout());
+            Assertions.assertTrue(
+                    status.getStdout().contains("finished exit_code=0"),
+                    "Status file did not record that re-owning finished: " + status.getStdout());
+            verifyDataFolderContentsArePresentOnHost(dataMount, false);
+        }
+    }
+
+    @Test
+    void testInvalidScanModeFails() throws IOException {
+        Assumptions.assumeTrue(TestSettings.NEO4J_VERSION.isCalver(), "Mount scan modes are only in calver images");
+
+        try (GenericContainer container = setupBasicContainer(false, false)) {
+            container.withEnv("NEO4J_MOUNT_SCAN_MODE", "everything");
+            temporaryFolderManager.createFolderAndMountAsVolume(container, "/data");
+            container.setWaitStrategy(Wait.forLogMessage(".*Invalid value for NEO4J_MOUNT_SCAN_MODE.*", 1)
+                    .withStartupTimeout(Duration.ofSeconds(20)));
+            Assertions.assertThrows(
+                    ContainerLaunchException.class,
+                    () -> container.start(),
+                    "Neo4j should not start with an invalid NEO4J_MOUNT_SCAN_MODE");
+        }
+    }
+
+    @ParameterizedTest(name = "timeout={0}")
+    @ValueSource(strings = {"30s5", "abc"})
+    void testInvalidScanTimeoutFails(String timeout) throws IOException {
+        Assumptions.assumeTrue(TestSettings.NEO4J_VERSION.isCalver(), "Mount scan timeouts are only in calver images");
+
+        try (GenericContainer container = setupBasicContainer(false, false)) {
+            container.withEnv("NEO4J_MOUNT_SCAN_TIMEOUT", timeout);
+            Path dataMount = temporaryFolderManager.createFolderAndMountAsVolume(container, "/data");
+            // the scan only runs if the folder itself is writable
+            dataMount.toFile().setWritable(true, false);
+            container.setWaitStrategy(Wait.forLogMessage(".*Invalid value for NEO4J_MOUNT_SCAN_TIMEOUT.*", 1)
+                    .withStartupTimeout(Duration.ofSeconds(20)));
+            Assertions.assertThrows(
+                    ContainerLaunchException.class,
+                    () -> container.start(),
+                    "Neo4j should not start with an invalid NEO4J_MOUNT_SCAN_TIMEOUT");
+        }
+    }
+
+    @Test
+    void testScanTimeoutFallsBackToReowning() throws IOException {
+        Assumptions.assumeTrue(TestSettings.NEO4J_VERSION.isCalver(), "Mount scan timeouts are only in calver images");
+
+        try (GenericContainer container = setupBasicContainer(false, false)) {
+            // no scan can finish in a millisecond, so this always times out.
+            container.withEnv("NEO4J_MOUNT_SCAN_TIMEOUT", "0.001");
+            Path dataMount = temporaryFolderManager.createFolderAndMountAsVolume(container, "/data");
+            // everything is writable, so that the scan has to look at every file instead of stopping early.
+            dataMount.toFile().setWritable(true, false);
+            Path folder = Files.createDirectories(dataMount.resolve("databases/neo4j"));
+            for (int i = 0; i < 100; i++) {
+                Files.createFile(folder.resolve("file" + i)).toFile().setWritable(true, false);
+            }
+            container.start();
+
+            String logs = container.getLogs(OutputFrame.OutputType.STDOUT);
+            Assertions.assertTrue(
+                    logs.contains("Scanning \"/data\" for files that are not writable took longer than 0.001 seconds"),
+                    "Did not report that the scan of /data timed out");
+            Assertions.assertTrue(logs.contains("Changing owner of"), "Did not re-own /data after the scan timed out");
+            verifyDataFolderContentsArePresentOnHost(dataMount, false);
+        }
+    }
+
     @Test
     void testCantWriteIfSecureEnabledAndNoPermissions_data() throws IOException {
         Assumptions.assumeTrue(
@@ -311,6 +422,30 @@ public class TestMounting {
         }
     }
 
+    @Test
+    void shouldNotChownAgainOnRestart() throws Exception {
+        Assumptions.assumeTrue(
+                TestSettings.NEO4J_VERSION.isCalver(), "NEO4J_HOME ownership stamp is only in calver images");
+
+        try (GenericContainer container = setupBasicContainer(false, false)) {
+            container.withEnv("NEO4J_DEBUG", "yes");
+            temporaryFolderManager.createFolderAndMountAsVolume(container, "/data");
+            temporaryFolderManager.createFolderAndMountAsVolume(container, "/logs");
+            container.start();
+            int chownsOnFirstStart = ContainerRestart.countInLogs(container, "Changing folder owner");
+
+            ContainerRestart.restartAndWaitForNeo4jStarted(container, Duration.ofSeconds(180));
+            Assertions.assertEquals(
+                    chownsOnFirstStart,
+                    ContainerRestart.countInLogs(container, "Changing folder owner"),
+                    "Mounted folders were chowned again on the second start");
+            Assertions.assertEquals(
+                    1,
+                    ContainerRestart.countInLogs(container, "chowning files in /var/lib/neo4j"),
+                    "NEO4J_HOME was chowned again on the second start");
+        }
+    }
+
     private static void cleanupVolumes(String id) {
         DockerClient client = DockerClientFactory.instance().client();
         client.removeVolumeCmd("conf-" + id).exec();
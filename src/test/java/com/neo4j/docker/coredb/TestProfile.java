@@ -0,0 +1,129 @@
+package com.neo4j.docker.coredb;
+
+import com.neo4j.docker.utils.DatabaseIO;
+import com.neo4j.docker.utils.SetContainerUser;
+import com.neo4j.docker.utils.TemporaryFolderManager;
+import com.neo4j.docker.utils.TestSettings;
+import com.neo4j.docker.utils.WaitStrategies;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testcontainers.containers.Container;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.output.Slf4jLogConsumer;
+
+public class TestProfile {
+    private final Logger log = LoggerFactory.getLogger(TestProfile.class);
+
+    @RegisterExtension
+    public static TemporaryFolderManager temporaryFolderManager = new TemporaryFolderManager();
+
+    @BeforeAll
+    static void checkVersion() {
+        Assumptions.assumeTrue(TestSettings.NEO4J_VERSION.isCalver(), "neo4j-profile is only in calver images");
+    }
+
+    static Stream<Arguments> eventsAndUsers() {
+        return Stream.of("cpu", "alloc", "lock")
+                .flatMap(event -> Stream.of(Arguments.of(event, true), Arguments.of(event, false)));
+    }
+
+    private GenericContainer createContainer(boolean asCurrentUser) {
+        GenericContainer container = new GenericContainer(TestSettings.IMAGE_ID)
+                .withEnv("NEO4J_AUTH", "none")
+                .withEnv("NEO4J_ACCEPT_LICENSE_AGREEMENT", "yes")
+                .withExposedPorts(7474, 7687)
+                .withLogConsumer(new Slf4jLogConsumer(log))
+                .waitingFor(WaitStrategies.waitForBoltReady());
+        if (asCurrentUser) {
+            SetContainerUser.nonRootUser(container);
+        }
+        return container;
+    }
+
+    private Container.ExecResult runProfileUnderLoad(GenericContainer container, String... profileCommand)
+            throws Exception {
+        DatabaseIO dbio = new DatabaseIO(container);
+        dbio.putInitialDataIntoContainer("neo4j", "none");
+        AtomicBoolean profiling = new AtomicBoolean(true);
+        CompletableFuture<Void> load = CompletableFuture.runAsync(() -> {
+            while (profiling.get()) {
+                dbio.runCypherQuery(
+                        "neo4j",
+                        "none",
+                        "UNWIND range(1, 10000) AS i WITH i, toString(i) AS s RETURN count(DISTINCT s + i)");
+            }
+        });
+        try {
+            Container.ExecResult execResult = container.execInContainer(profileCommand);
+            // log exec results, because the results of an exec don't get logged automatically.
+            log.info(execResult.getStdout());
+            log.warn(execResult.getStderr());
+            return execResult;
+        } finally {
+            profiling.set(false);
+            load.join();
+        }
+    }
+
+    @ParameterizedTest(name = "{0}_ascurrentuser_{1}")
+    @MethodSource("eventsAndUsers")
+    void testProfileUnderLoad(String event, boolean asCurrentUser) throws Exception {
+        try (GenericContainer container = createContainer(asCurrentUser)) {
+            Path profileMount = temporaryFolderManager.createFolderAndMountAsVolume(container, "/profiles");
+            container.start();
+            Container.ExecResult execResult = runProfileUnderLoad(
+                    container, "neo4j-profile", "--duration=5", "--event=" + event, "--to-path=/profiles");
+            Assertions.assertEquals(0, execResult.getExitCode(), "neo4j-profile failed");
+
+            List<Path> profiles;
+            try (var files = Files.list(profileMount)) {
+                profiles = files.filter(file ->
+                                file.getFileName().toString().matches("neo4j-" + event + "-[0-9TZ]+\\.(html|jfr)"))
+                        .toList();
+            }
+            Assertions.assertEquals(1, profiles.size(), "Expected one " + event + " profile in " + profileMount);
+            Assertions.assertTrue(Files.size(profiles.get(0)) > 0, "The profile is empty");
+        }
+    }
+
+    @Test
+    void testProfileToUnwritableLocationFails() throws Exception {
+        try (GenericContainer container = createContainer(true)) {
+            Path profileMount = temporaryFolderManager.createFolderAndMountAsVolume(container, "/profiles");
+            container.start();
+            profileMount.toFile().setWritable(false, false);
+            Container.ExecResult execResult =
+                    container.execInContainer("neo4j-profile", "--duration=1", "--to-path=/profiles");
+            Assertions.assertNotEquals(0, execResult.getExitCode(), "neo4j-profile should fail");
+            Assertions.assertTrue(
+                    execResult.getStderr().contains("Folder /profiles is not accessible"),
+                    "Did not get the file permissions advice:\n" + execResult.getStderr());
+        }
+    }
+
+    @Test
+    void testInvalidEventFails() throws Exception {
+        try (GenericContainer container = createContainer(false)) {
+            container.start();
+            Container.ExecResult execResult = container.execInContainer("neo4j-profile", "--event=wall-clock");
+            Assertions.assertNotEquals(0, execResult.getExitCode(), "neo4j-profile should reject unknown events");
+            Assertions.assertTrue(
+                    execResult.getStderr().contains("--event must be cpu, alloc or lock"),
+                    "Did not explain which events can be used:\n" + execResult.getStderr());
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.neo4j.docker.coredb.configurations;
+
+import com.neo4j.docker.utils.SetContainerUser;
+import com.neo4j.docker.utils.TemporaryFolderManager;
+import com.neo4j.docker.utils.TestSettings;
+import com.neo4j.docker.utils.WaitStrategies;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.output.OutputFrame;
+
+/**Gets the configuration the docker entrypoint would give neo4j, without having to start neo4j.
+ * <p>
+ * Calver images have a <code>render-config</code> command that does this without starting any JVMs.
+ * Older images fall back to <code>dump-config</code>, which needs a <code>/conf</code> mount to write to.
+ * */
+public class ConfigRenderer {
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+    /**Sets the container up to write its final configuration files into its <code>/conf</code> mount and then exit.
+     * The caller must mount a folder to <code>/conf</code> and start the container.*/
+    public static GenericContainer makeContainerDumpConfig(GenericContainer container) {
+        SetContainerUser.nonRootUser(container);
+        if (TestSettings.NEO4J_VERSION.isCalver()) {
+            container.setCommand("render-config", "/conf");
+        } else {
+            container.setCommand("dump-config");
+        }
+        WaitStrategies.waitUntilContainerFinished(container, TIMEOUT);
+        return container;
+    }
+
+    /**Starts the container to render neo4j.conf, and returns the settings in it.
+     * <p>
+     * The container must not already have <code>/conf</code> mounted,
+     * because older images need to mount one to dump the configuration.*/
+    public static Map<String, String> renderNeo4jConf(
+            GenericContainer container, TemporaryFolderManager temporaryFolderManager) throws IOException {
+        return parseConf(renderConfFile(container, temporaryFolderManager, "neo4j.conf"));
+    }
+
+    /**Starts the container to render the configuration, and returns the contents of the given conf file.
+     * This is useful for settings that can appear more than once, like <code>server.jvm.additional</code>.
+     * <p>
+     * The container must not already have <code>/conf</code> mounted,
+     * because older images need to mount one to dump the configuration.*/
+    public static String renderConfFile(
+            GenericContainer container, TemporaryFolderManager temporaryFolderManager, String confFileName)
+            throws IOException {
+        if (TestSettings.NEO4J_VERSION.isCalver()) {
+            SetContainerUser.nonRootUser(container);
+            container.setCommand("render-config", confFileName);
+            WaitStrategies.waitUntilContainerFinished(container, TIMEOUT);
+            container.start();
+            return container.getLogs(OutputFrame.OutputType.STDOUT);
+        }
+        Path confMount = temporaryFolderManager.createFolderAndMountAsVolume(container, "/conf");
+        makeContainerDumpConfig(container);
+        container.start();
+        return Files.readString(confMount.resolve(confFileName));
+    }
+
+    /**Starts the container with the given neo4j.conf mounted to <code>/conf</code> to render the configuration,
+     * and returns the rendered contents of the given conf file.
+     * <p>
+     * The container must not already have <code>/conf</code> mounted.*/
+    public static String renderConfFileWithMountedConf(
+            GenericContainer container,
+            TemporaryFolderManager temporaryFolderManager,
+            String neo4jConfContents,
+            String confFileName)
+            throws IOException {
+        Path confMount = temporaryFolderManager.createFolderAndMountAsVolume(container, "/conf");
+        Files.writeString(confMount.resolve("neo4j.conf"), neo4jConfContents);
+        makeContainerDumpConfig(container);
+        container.start();
+        return Files.readString(confMount.resolve(confFileName));
+    }
+
+    public static Map<String, String> parseConfFile(Path conf) throws IOException {
+        return parseConf(Files.readString(conf));
+    }
+
+    /**@return settings in the given conf file contents. If a setting appears more than once, the last value is kept.*/
+    public static Map<String, String> parseConf(String confContents) {
+        Map<String, String> configurations = new HashMap<>();
+        for (String line : confContents.split("\n")) {
+            String[] params = line.split("=", 2);
+            if (params.length < 2) {
+                continue;
+            }
+            configurations.put(params[0], params[1]);
+        }
+        return configurations;
+    }
+}
@@ -18,6 +18,7 @@ public enum Setting {
     MEMORY_HEAP_INITIALSIZE,
     MEMORY_HEAP_MAXSIZE,
     MEMORY_PAGECACHE_SIZE,
+    MEMORY_TRANSACTION_TOTALMAX,
     MINIMUM_PASSWORD_LENGTH,
     SECURITY_PROCEDURES_UNRESTRICTED,
     TXLOG_RETENTION_POLICY
@@ -0,0 +1,145 @@
+package com.neo4j.docker.coredb.configurations;
+
+import com.github.dockerjava.api.command.CreateContainerCmd;
+import com.neo4j.docker.utils.ContainerRestart;
+import com.neo4j.docker.utils.TemporaryFolderManager;
+import com.neo4j.docker.utils.TestSettings;
+import com.neo4j.docker.utils.WaitStrategies;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.output.Slf4jLogConsumer;
+
+public class TestAutoCpu {
+    private final Logger log = LoggerFactory.getLogger(TestAutoCpu.class);
+    // --cpus=0.5
+    private static final long HALF_A_CPU = 500_000_000L;
+    private static final int CPU_PERIOD = 100_000;
+    private static Map<Setting, Configuration> confNames;
+
+    @RegisterExtension
+    public static TemporaryFolderManager temporaryFolderManager = new TemporaryFolderManager();
+
+    @BeforeAll
+    static void getVersionSpecificConfigurationSettings() {
+        Assumptions.assumeTrue(TestSettings.NEO4J_VERSION.isCalver(), "Automatic CPU sizing is only in calver images");
+        confNames = Configuration.getConfigurationNameMap();
+    }
+
+    private GenericContainer createContainer() {
+        return new GenericContainer(TestSettings.IMAGE_ID)
+                .withEnv("NEO4J_AUTH", "none")
+                .withEnv("NEO4J_ACCEPT_LICENSE_AGREEMENT", "yes")
+                .withCreateContainerCmdModifier((Consumer<CreateContainerCmd>)
+                        cmd -> cmd.getHostConfig().withNanoCPUs(HALF_A_CPU))
+                .withLogConsumer(new Slf4jLogConsumer(log));
+    }
+
+    private List<String> getJvmAdditional(String neo4jConf) {
+        String prefix = confNames.get(Setting.JVM_ADDITIONAL).name + "=";
+        return Arrays.stream(neo4jConf.split("\n"))
+                .filter(line -> line.startsWith(prefix))
+                .map(line -> line.substring(prefix.length()))
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    void testJvmIsSizedFromCpuQuota() throws Exception {
+        String neo4jConf;
+        try (GenericContainer container = createContainer().withEnv("NEO4J_AUTO_CPU", "true")) {
+            neo4jConf = ConfigRenderer.renderConfFile(container, temporaryFolderManager, "neo4j.conf");
+        }
+        List<String> jvmAdditional = getJvmAdditional(neo4jConf);
+        Assertions.assertTrue(jvmAdditional.contains("-XX:ActiveProcessorCount=1"), "JVM not limited to 1 CPU");
+        Assertions.assertTrue(jvmAdditional.contains("-XX:ParallelGCThreads=1"), "GC threads not limited to 1 CPU");
+        Assertions.assertTrue(jvmAdditional.contains("-XX:ConcGCThreads=1"), "Concurrent GC threads not limited");
+        Assertions.assertTrue(
+                jvmAdditional.contains("-XX:+UseG1GC"), "Default JVM options should not have been removed");
+        Assertions.assertEquals(
+                "25",
+                ConfigRenderer.parseConf(neo4jConf).get("server.bolt.thread_pool_max_size"),
+                "Bolt thread pool not sized from the CPU quota");
+    }
+
+    @Test
+    void testJvmIsSizedAgainWhenCpuQuotaChangesOnRestart() throws Exception {
+        // the docker client used here can only update a CPU period and quota, not --cpus.
+        try (GenericContainer container = new GenericContainer(TestSettings.IMAGE_ID)
+                .withEnv("NEO4J_AUTH", "none")
+                .withEnv("NEO4J_ACCEPT_LICENSE_AGREEMENT", "yes")
+                .withEnv("NEO4J_AUTO_CPU", "true")
+                .withCreateContainerCmdModifier((Consumer<CreateContainerCmd>) cmd ->
+                        cmd.getHostConfig().withCpuPeriod((long) CPU_PERIOD).withCpuQuota((long) CPU_PERIOD / 2))
+                .withExposedPorts(7474, 7687)
+                .withLogConsumer(new Slf4jLogConsumer(log))
+                .waitingFor(WaitStrategies.waitForBoltReady())) {
+            container.start();
+            int hostCpus = Integer.parseInt(
+                    container.execInContainer("nproc").getStdout().trim());
+            Assumptions.assumeTrue(hostCpus >= 2, "Needs a docker host with at least 2 CPUs");
+            // same as: docker update --cpus=2
+            container
+                    .getDockerClient()
+                    .updateContainerCmd(container.getContainerId())
+                    .withCpuQuota(CPU_PERIOD * 2)
+                    .exec();
+            ContainerRestart.restartAndWaitForNeo4jStarted(container, Duration.ofSeconds(180));
+
+            String neo4jConf =
+                    container.execInContainer("cat", "conf/neo4j.conf").getStdout();
+            List<String> processorCounts = getJvmAdditional(neo4jConf).stream()
+                    .filter(option -> option.startsWith("-XX:ActiveProcessorCount="))
+                    .collect(Collectors.toList());
+            Assertions.assertEquals(
+                    List.of("-XX:ActiveProcessorCount=2"),
+                    processorCounts,
+                    "JVM CPU count was not worked out again from the new CPU quota");
+            Assertions.assertTrue(
+                    getJvmAdditional(neo4jConf).contains("-XX:ParallelGCThreads=2"),
+                    "GC threads were not sized again from the new CPU quota");
+            Assertions.assertEquals(
+                    "50",
+                    ConfigRenderer.parseConf(neo4jConf).get("server.bolt.thread_pool_max_size"),
+                    "Bolt thread pool was not sized again from the new CPU quota");
+        }
+    }
+
+    @Test
+    void testAutoCpuDoesNotOverrideUserSettings() throws Exception {
+        String neo4jConf;
+        try (GenericContainer container = createContainer()
+                .withEnv("NEO4J_AUTO_CPU", "true")
+                .withEnv(confNames.get(Setting.JVM_ADDITIONAL).envName, "-XX:ParallelGCThreads=3")
+                .withEnv("NEO4J_server_bolt_thread__pool__max__size", "50")) {
+            neo4jConf = ConfigRenderer.renderConfFile(container, temporaryFolderManager, "neo4j.conf");
+        }
+        List<String> gcThreads = getJvmAdditional(neo4jConf).stream()
+                .filter(option -> option.startsWith("-XX:ParallelGCThreads="))
+                .collect(Collectors.toList());
+        Assertions.assertEquals(
+                List.of("-XX:ParallelGCThreads=3"), gcThreads, "User's GC thread count should not be overridden");
+        Assertions.assertEquals("50", ConfigRenderer.parseConf(neo4jConf).get("server.bolt.thread_pool_max_size"));
+    }
+
+    @Test
+    void testAutoCpuIsOptIn() throws Exception {
+        String neo4jConf;
+        try (GenericContainer container = createContainer()) {
+            neo4jConf = ConfigRenderer.renderConfFile(container, temporaryFolderManager, "neo4j.conf");
+        }
+        Assertions.assertTrue(
+                getJvmAdditional(neo4jConf).stream().noneMatch(option -> option.startsWith("-XX:ActiveProcessorCount")),
+                "CPU count should not be set unless NEO4J_AUTO_CPU is set");
+    }
+}
@@ -0,0 +1,133 @@
+package com.neo4j.docker.coredb.configurations;
+
+import com.github.dockerjava.api.command.CreateContainerCmd;
+import com.neo4j.docker.utils.ContainerRestart;
+import com.neo4j.docker.utils.TemporaryFolderManager;
+import com.neo4j.docker.utils.TestSettings;
+import com.neo4j.docker.utils.WaitStrategies;
+import java.time.Duration;
+import java.util.Map;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testcontainers.containers.Container;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.output.Slf4jLogConsumer;
+
+public class TestAutoMemory {
+    private final Logger log = LoggerFactory.getLogger(TestAutoMemory.class);
+    private static final long MEMORY_LIMIT_2GB = 2048L * 1024 * 1024;
+    private static final long MEMORY_LIMIT_1_5GB = 1536L * 1024 * 1024;
+    private static Map<Setting, Configuration> confNames;
+
+    @RegisterExtension
+    public static TemporaryFolderManager temporaryFolderManager = new TemporaryFolderManager();
+
+    @BeforeAll
+    static void getVersionSpecificConfigurationSettings() {
+        Assumptions.assumeTrue(
+                TestSettings.NEO4J_VERSION.isCalver(), "Automatic memory sizing is only in calver images");
+        confNames = Configuration.getConfigurationNameMap();
+    }
+
+    private GenericContainer createContainer(Long memoryLimit) {
+        GenericContainer container = new GenericContainer(TestSettings.IMAGE_ID)
+                .withEnv("NEO4J_AUTH", "none")
+                .withEnv("NEO4J_ACCEPT_LICENSE_AGREEMENT", "yes")
+                .withLogConsumer(new Slf4jLogConsumer(log));
+        if (memoryLimit != null) {
+            container.withCreateContainerCmdModifier(
+                    (Consumer<CreateContainerCmd>) cmd -> cmd.getHostConfig().withMemory(memoryLimit));
+        }
+        return container;
+    }
+
+    @Test
+    void testMemoryIsSizedFromContainerLimit() throws Exception {
+        Map<String, String> configurations;
+        try (GenericContainer container = createContainer(MEMORY_LIMIT_2GB).withEnv("NEO4J_AUTO_MEMORY", "true")) {
+            configurations = ConfigRenderer.renderNeo4jConf(container, temporaryFolderManager);
+        }
+        // 2048MiB limit, 512MiB reserved, the remaining 1536MiB is split 40% heap, 10% transactions, 50% page cache.
+        Assertions.assertEquals("614m", configurations.get(confNames.get(Setting.MEMORY_HEAP_INITIALSIZE).name));
+        Assertions.assertEquals("614m", configurations.get(confNames.get(Setting.MEMORY_HEAP_MAXSIZE).name));
+        Assertions.assertEquals("769m", configurations.get(confNames.get(Setting.MEMORY_PAGECACHE_SIZE).name));
+        Assertions.assertEquals("153m", configurations.get(confNames.get(Setting.MEMORY_TRANSACTION_TOTALMAX).name));
+    }
+
+    @Test
+    void testMemoryIsSizedAgainWhenLimitChangesOnRestart() throws Exception {
+        try (GenericContainer container = createContainer(MEMORY_LIMIT_2GB)
+                .withEnv("NEO4J_AUTO_MEMORY", "true")
+                .withExposedPorts(7474, 7687)
+                .waitingFor(WaitStrategies.waitForBoltReady())) {
+            container.start();
+            // same as: docker update --memory=1536m
+            container
+                    .getDockerClient()
+                    .updateContainerCmd(container.getContainerId())
+                    .withMemory(MEMORY_LIMIT_1_5GB)
+                    .withMemorySwap(MEMORY_LIMIT_1_5GB)
+                    .exec();
+            ContainerRestart.restartAndWaitForNeo4jStarted(container, Duration.ofSeconds(180));
+
+            Container.ExecResult neo4jConf = container.execInContainer("cat", "conf/neo4j.conf");
+            Map<String, String> configurations = ConfigRenderer.parseConf(neo4jConf.getStdout());
+            // 1536MiB limit, 512MiB reserved, the remaining 1024MiB is split 40% heap, 10% transactions, 50% page
+            // cache.
+            Assertions.assertEquals("409m", configurations.get(confNames.get(Setting.MEMORY_HEAP_MAXSIZE).name));
+            Assertions.assertEquals("513m", configurations.get(confNames.get(Setting.MEMORY_PAGECACHE_SIZE).name));
+            Assertions.assertEquals(
+                    "102m", configurations.get(confNames.get(Setting.MEMORY_TRANSACTION_TOTALMAX).name));
+            Assertions.assertEquals(
+                    0,
+                    ContainerRestart.countInLogs(container, "Configuration has not changed since the last start"),
+                    "Configuration should not be reused after the memory limit changed");
+        }
+    }
+
+    @Test
+    void testAutoMemoryDoesNotOverrideUserSettings() throws Exception {
+        Map<String, String> configurations;
+        try (GenericContainer container = createContainer(MEMORY_LIMIT_2GB)
+                .withEnv("NEO4J_AUTO_MEMORY", "true")
+                .withEnv(confNames.get(Setting.MEMORY_HEAP_MAXSIZE).envName, "1g")) {
+            configurations = ConfigRenderer.renderNeo4jConf(container, temporaryFolderManager);
+        }
+        Assertions.assertEquals(
+                "1g",
+                configurations.get(confNames.get(Setting.MEMORY_HEAP_MAXSIZE).name),
+                "Automatic memory sizing overrode the heap size set by the user");
+        Assertions.assertEquals("769m", configurations.get(confNames.get(Setting.MEMORY_PAGECACHE_SIZE).name));
+    }
+
+    @Test
+    void testAutoMemoryIsOptIn() throws Exception {
+        Map<String, String> configurations;
+        try (GenericContainer container = createContainer(MEMORY_LIMIT_2GB)) {
+            configurations = ConfigRenderer.renderNeo4jConf(container, temporaryFolderManager);
+        }
+        Assertions.assertEquals("512M", configurations.get(confNames.get(Setting.MEMORY_PAGECACHE_SIZE).name));
+        Assertions.assertFalse(
+                configurations.containsKey(confNames.get(Setting.MEMORY_HEAP_MAXSIZE).name),
+                "Heap should not be sized unless NEO4J_AUTO_MEMORY is set");
+    }
+
+    @Test
+    void testAutoMemoryWithoutLimitUsesDefaults() throws Exception {
+        Map<String, String> configurations;
+        String logs;
+        try (GenericContainer container = createContainer(null).withEnv("NEO4J_AUTO_MEMORY", "true")) {
+            configurations = ConfigRenderer.renderNeo4jConf(container, temporaryFolderManager);
+            logs = container.getLogs();
+        }
+        Assertions.assertTrue(
+                logs.contains("the container has no memory limit"), "Did not warn that there is no memory limit");
+        Assertions.assertEquals("512M", configurations.get(confNames.get(Setting.MEMORY_PAGECACHE_SIZE).name));
+    }
+}
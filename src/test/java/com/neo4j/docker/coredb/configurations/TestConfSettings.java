@@ -1,21 +1,21 @@
 package com.neo4j.docker.coredb.configurations;
 
 import com.neo4j.docker.coredb.plugins.Neo4jPluginEnv;
-import com.neo4j.docker.utils.DatabaseIO;
+import com.neo4j.docker.utils.ContainerRestart;
 import com.neo4j.docker.utils.Neo4jVersion;
 import com.neo4j.docker.utils.SetContainerUser;
 import com.neo4j.docker.utils.TemporaryFolderManager;
 import com.neo4j.docker.utils.TestSettings;
 import com.neo4j.docker.utils.WaitStrategies;
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.time.Duration;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Scanner;
 import java.util.stream.Stream;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Assumptions;
@@ -23,9 +23,9 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.RegisterExtension;
-import org.neo4j.driver.exceptions.ClientException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.testcontainers.containers.Container;
 import org.testcontainers.containers.GenericContainer;
 import org.testcontainers.containers.output.OutputFrame;
 import org.testcontainers.containers.output.Slf4jLogConsumer;
@@ -56,24 +56,11 @@ public class TestConfSettings {
     }
 
     private GenericContainer makeContainerDumpConfig(GenericContainer container) {
-        SetContainerUser.nonRootUser(container);
-        container.setCommand("dump-config");
-        WaitStrategies.waitUntilContainerFinished(container, Duration.ofSeconds(30));
-        return container;
+        return ConfigRenderer.makeContainerDumpConfig(container);
     }
 
-    private Map<String, String> parseConfFile(File conf) throws FileNotFoundException {
-        Map<String, String> configurations = new HashMap<>();
-        Scanner scanner = new Scanner(conf);
-        while (scanner.hasNextLine()) {
-            String[] params = scanner.nextLine().split("=", 2);
-            if (params.length < 2) {
-                continue;
-            }
-            log.debug(params[0] + "\t:\t" + params[1]);
-            configurations.put(params[0], params[1]);
-        }
-        return configurations;
+    private Map<String, String> parseConfFile(File conf) throws IOException {
+        return ConfigRenderer.parseConfFile(conf.toPath());
     }
 
     private void assertConfigurationPresentInDebugLog(
@@ -96,18 +83,20 @@ public class TestConfSettings {
     }
 
     @Test
-    void testIgnoreNumericVars() {
+    void testIgnoreNumericVars() throws Exception {
+        Map<String, String> configurations;
+        String errorLogs;
         try (GenericContainer container = createContainer()) {
-            container.withEnv("NEO4J_1a", "1").waitingFor(WaitStrategies.waitForBoltReady());
-            container.start();
-            Assertions.assertTrue(container.isRunning());
-            String errorLogs = container.getLogs(OutputFrame.OutputType.STDERR);
-            Assertions.assertTrue(
-                    errorLogs.contains(
-                            "WARNING: 1a not written to conf file. Settings that start with a number are not permitted"),
-                    "Neo4j did not warn about invalid numeric config variable `Neo4j_1a`.\n" + "Actual warnings were:\n"
-                            + errorLogs);
+            container.withEnv("NEO4J_1a", "1");
+            configurations = ConfigRenderer.renderNeo4jConf(container, temporaryFolderManager);
+            errorLogs = container.getLogs(OutputFrame.OutputType.STDERR);
         }
+        Assertions.assertTrue(
+                errorLogs.contains(
+                        "WARNING: 1a not written to conf file. Settings that start with a number are not permitted"),
+                "Neo4j did not warn about invalid numeric config variable `Neo4j_1a`.\n" + "Actual warnings were:\n"
+                        + errorLogs);
+        Assertions.assertFalse(configurations.containsKey("1a"), "Numeric setting was written to neo4j.conf");
     }
 
     @Test
@@ -115,7 +104,7 @@ public class TestConfSettings {
         Assumptions.assumeTrue(
                 TestSettings.NEO4J_VERSION.isAtLeastVersion(new Neo4jVersion(3, 0, 0)),
                 "No neo4j-admin in 2.3: skipping neo4j-admin-conf-override test");
-        File conf;
+        Map<String, String> configurations;
         Map<Setting, String> expectedValues = new HashMap<Setting, String>() {
             {
                 put(Setting.MEMORY_PAGECACHE_SIZE, "1000m");
@@ -130,17 +119,10 @@ public class TestConfSettings {
             for (Setting s : expectedValues.keySet()) {
                 container.withEnv(confNames.get(s).envName, expectedValues.get(s));
             }
-            Path confMount = temporaryFolderManager.createFolderAndMountAsVolume(container, "/conf");
-            conf = confMount.resolve("neo4j.conf").toFile();
-            makeContainerDumpConfig(container);
-            container.start();
+            configurations = ConfigRenderer.renderNeo4jConf(container, temporaryFolderManager);
         }
 
         // now check the settings we set via env are in the new conf file
-        Assertions.assertTrue(conf.exists(), "configuration file not written");
-        Assertions.assertTrue(conf.canRead(), "configuration file not readable for some reason?");
-
-        Map<String, String> configurations = parseConfFile(conf);
         for (Setting s : expectedValues.keySet()) {
             Assertions.assertTrue(
                     configurations.containsKey(confNames.get(s).name), confNames.get(s).name + " not set at all");
@@ -153,59 +135,42 @@ public class TestConfSettings {
 
     @Test
     void testReadsTheConfFile() throws Exception {
-        Path debugLog;
-
-        try (GenericContainer container = createContainer().waitingFor(WaitStrategies.waitForNeo4jReady(PASSWORD))) {
-            // Mount /conf
-            Path confMount = temporaryFolderManager.createFolderAndMountAsVolume(container, "/conf");
-            Path logMount = temporaryFolderManager.createFolderAndMountAsVolume(container, "/logs");
-            debugLog = logMount.resolve("debug.log");
-            SetContainerUser.nonRootUser(container);
-            // Create ReadConf.conf file with the custom env variables
-            Path confFile = confFolder.resolve("ReadConf.conf");
-            Files.copy(confFile, confMount.resolve("neo4j.conf"));
-            // Start the container
-            container.start();
+        Map<String, String> configurations;
+        try (GenericContainer container = createContainer()) {
+            configurations = ConfigRenderer.parseConf(ConfigRenderer.renderConfFileWithMountedConf(
+                    container,
+                    temporaryFolderManager,
+                    Files.readString(confFolder.resolve("ReadConf.conf")),
+                    "neo4j.conf"));
         }
-
         // Check if the container reads the conf file
-        assertConfigurationPresentInDebugLog(debugLog, confNames.get(Setting.MEMORY_HEAP_MAXSIZE), "512", true);
+        Assertions.assertEquals(
+                "512m",
+                configurations.get(confNames.get(Setting.MEMORY_HEAP_MAXSIZE).name),
+                "Setting from the mounted conf file was not used");
     }
 
     @Test
     void testDefaultsConfigsAreSet() throws Exception {
-        try (GenericContainer container = createContainer().waitingFor(WaitStrategies.waitForNeo4jReady(PASSWORD))) {
-            // Mount /logs
-            Path logMount = temporaryFolderManager.createFolderAndMountAsVolume(container, "/logs");
-            SetContainerUser.nonRootUser(container);
-            // Start the container
-            container.start();
-            DatabaseIO dbio = new DatabaseIO(container);
-            Path debugLog = logMount.resolve("debug.log");
-
-            String expectedDefaultListenAddress = "0.0.0.0";
-            dbio.verifyConfigurationSetting(
-                    "neo4j", PASSWORD, confNames.get(Setting.DEFAULT_LISTEN_ADDRESS), expectedDefaultListenAddress);
-            assertConfigurationPresentInDebugLog(
-                    debugLog, confNames.get(Setting.DEFAULT_LISTEN_ADDRESS), expectedDefaultListenAddress, true);
-            // test enterprise only default configurations are set
-            if (TestSettings.EDITION == TestSettings.Edition.ENTERPRISE) {
-                String expectedTxAddress = container.getContainerId().substring(0, 12) + ":6000";
-                String expectedRaftAddress = container.getContainerId().substring(0, 12) + ":7000";
-                String expectedRoutingAddress = container.getContainerId().substring(0, 12) + ":7688";
-                dbio.verifyConfigurationSetting(
-                        "neo4j", PASSWORD, confNames.get(Setting.CLUSTER_TRANSACTION_ADDRESS), expectedTxAddress);
-                assertConfigurationPresentInDebugLog(
-                        debugLog, confNames.get(Setting.CLUSTER_TRANSACTION_ADDRESS), expectedTxAddress, true);
-                dbio.verifyConfigurationSetting(
-                        "neo4j", PASSWORD, confNames.get(Setting.CLUSTER_RAFT_ADDRESS), expectedRaftAddress);
-                assertConfigurationPresentInDebugLog(
-                        debugLog, confNames.get(Setting.CLUSTER_RAFT_ADDRESS), expectedRaftAddress, true);
-                dbio.verifyConfigurationSetting(
-                        "neo4j", PASSWORD, confNames.get(Setting.CLUSTER_ROUTING_ADDRESS), expectedRoutingAddress);
-                assertConfigurationPresentInDebugLog(
-                        debugLog, confNames.get(Setting.CLUSTER_ROUTING_ADDRESS), expectedRoutingAddress, true);
-            }
+        Map<String, String> configurations;
+        String hostname;
+        try (GenericContainer container = createContainer()) {
+            configurations = ConfigRenderer.renderNeo4jConf(container, temporaryFolderManager);
+            hostname = container.getContainerId().substring(0, 12);
+        }
+        Map<Setting, String> expectedValues = new HashMap<>();
+        expectedValues.put(Setting.DEFAULT_LISTEN_ADDRESS, "0.0.0.0");
+        // test enterprise only default configurations are set
+        if (TestSettings.EDITION == TestSettings.Edition.ENTERPRISE) {
+            expectedValues.put(Setting.CLUSTER_TRANSACTION_ADDRESS, hostname + ":6000");
+            expectedValues.put(Setting.CLUSTER_RAFT_ADDRESS, hostname + ":7000");
+            expectedValues.put(Setting.CLUSTER_ROUTING_ADDRESS, hostname + ":7688");
+        }
+        for (Setting s : expectedValues.keySet()) {
+            Assertions.assertEquals(
+                    expectedValues.get(s),
+                    configurations.get(confNames.get(s).name),
+                    confNames.get(s).name + " does not have the docker default value");
         }
     }
 
@@ -308,21 +273,19 @@ public class TestConfSettings {
         Assumptions.assumeTrue(
                 TestSettings.NEO4J_VERSION.isAtLeastVersion(new Neo4jVersion(4, 2, 0)),
                 "test not applicable in versions before 4.2.");
-        Path debugLog;
-        try (GenericContainer container = createContainer()
-                .withEnv(confNames.get(Setting.MEMORY_PAGECACHE_SIZE).envName, "512.00MiB")
-                .waitingFor(WaitStrategies.waitForNeo4jReady(PASSWORD))) {
-            Path confMount = temporaryFolderManager.createFolderAndMountAsVolume(container, "/conf");
-            Path logMount = temporaryFolderManager.createFolderAndMountAsVolume(container, "/logs");
-            debugLog = logMount.resolve("debug.log");
-            SetContainerUser.nonRootUser(container);
-            // Create EnvVarsOverride.conf file
-            Path confFile = confFolder.resolve("EnvVarsOverride.conf");
-            Files.copy(confFile, confMount.resolve("neo4j.conf"));
-            // Start the container
-            container.start();
+        Map<String, String> configurations;
+        try (GenericContainer container =
+                createContainer().withEnv(confNames.get(Setting.MEMORY_PAGECACHE_SIZE).envName, "512.00MiB")) {
+            configurations = ConfigRenderer.parseConf(ConfigRenderer.renderConfFileWithMountedConf(
+                    container,
+                    temporaryFolderManager,
+                    Files.readString(confFolder.resolve("EnvVarsOverride.conf")),
+                    "neo4j.conf"));
         }
-        assertConfigurationPresentInDebugLog(debugLog, confNames.get(Setting.MEMORY_PAGECACHE_SIZE), "512.00MiB", true);
+        Assertions.assertEquals(
+                "512.00MiB",
+                configurations.get(confNames.get(Setting.MEMORY_PAGECACHE_SIZE).name),
+                "Environment setting did not override the conf file");
     }
 
     @Test
@@ -330,24 +293,19 @@ public class TestConfSettings {
         Assumptions.assumeTrue(
                 TestSettings.EDITION == TestSettings.Edition.ENTERPRISE,
                 "This is testing only ENTERPRISE EDITION configs");
-
-        try (GenericContainer container = createContainer().waitingFor(WaitStrategies.waitForNeo4jReady(PASSWORD))) {
-            Path confMount = temporaryFolderManager.createFolderAndMountAsVolume(container, "/conf");
-            Path logMount = temporaryFolderManager.createFolderAndMountAsVolume(container, "/logs");
+        Map<String, String> configurations;
+        try (GenericContainer container = createContainer()) {
             // mount a configuration file with enterprise only settings already set
-            Path confFile = confFolder.resolve("EnterpriseOnlyNotOverwritten.conf");
-            Files.copy(confFile, confMount.resolve("neo4j.conf"));
-
-            // Start the container
-            SetContainerUser.nonRootUser(container);
-            container.start();
-            // Read debug.log to check that cluster confs are set successfully
-            assertConfigurationPresentInDebugLog(
-                    logMount.resolve("debug.log"),
-                    confNames.get(Setting.CLUSTER_TRANSACTION_ADDRESS),
-                    "localhost:6060",
-                    true);
+            configurations = ConfigRenderer.parseConf(ConfigRenderer.renderConfFileWithMountedConf(
+                    container,
+                    temporaryFolderManager,
+                    Files.readString(confFolder.resolve("EnterpriseOnlyNotOverwritten.conf")),
+                    "neo4j.conf"));
         }
+        Assertions.assertEquals(
+                "localhost:6060",
+                configurations.get(confNames.get(Setting.CLUSTER_TRANSACTION_ADDRESS).name),
+                "Enterprise docker default overrode the conf file");
     }
 
     @Test
@@ -374,21 +332,14 @@ public class TestConfSettings {
         Assumptions.assumeTrue(
                 TestSettings.EDITION == TestSettings.Edition.COMMUNITY,
                 "This is testing only COMMUNITY EDITION configs");
-
-        Path debugLog;
-        try (GenericContainer container = createContainer()
-                .withEnv(confNames.get(Setting.MEMORY_PAGECACHE_SIZE).envName, "512m")
-                .waitingFor(WaitStrategies.waitForNeo4jReady(PASSWORD))) {
-            // Mount /logs
-            Path logMount = temporaryFolderManager.createFolderAndMountAsVolume(container, "/logs");
-            debugLog = logMount.resolve("debug.log");
-            SetContainerUser.nonRootUser(container);
-            // Start the container
-            container.start();
+        Map<String, String> configurations;
+        try (GenericContainer container =
+                createContainer().withEnv(confNames.get(Setting.MEMORY_PAGECACHE_SIZE).envName, "512m")) {
+            configurations = ConfigRenderer.renderNeo4jConf(container, temporaryFolderManager);
         }
-
-        // Read debug.log to check that cluster confs are not present
-        assertConfigurationPresentInDebugLog(debugLog, confNames.get(Setting.CLUSTER_TRANSACTION_ADDRESS), "*", false);
+        Assertions.assertFalse(
+                configurations.containsKey(confNames.get(Setting.CLUSTER_TRANSACTION_ADDRESS).name),
+                "Community edition should not have cluster settings");
     }
 
     @Test
@@ -399,44 +350,47 @@ public class TestConfSettings {
         if (TestSettings.NEO4J_VERSION.isOlderThan(Neo4jVersion.NEO4J_VERSION_500)) {
             pluginStr = "[\"apoc-core\"]";
         }
-
-        try (GenericContainer container = createContainer().waitingFor(WaitStrategies.waitForNeo4jReady(PASSWORD))) {
-            Path confMount = temporaryFolderManager.createFolderAndMountAsVolume(container, "/conf");
-            Files.copy(confFolder.resolve("NoNewline.conf"), confMount.resolve("neo4j.conf"));
+        Map<String, String> configurations;
+        try (GenericContainer container = createContainer()) {
             container.withEnv(Neo4jPluginEnv.get(), pluginStr);
-            // Start the container
-            container.start();
-            DatabaseIO dbio = new DatabaseIO(container);
-            try {
-                dbio.runCypherQuery("neo4j", PASSWORD, "RETURN apoc.version()");
-            } catch (ClientException ex) {
-                Assertions.fail("Did not load apoc plugin.", ex);
-            }
-            dbio.verifyConfigurationSetting(
-                    "neo4j", PASSWORD, confNames.get(Setting.MEMORY_PAGECACHE_SIZE), expectedPageCacheSize);
+            configurations = ConfigRenderer.parseConf(ConfigRenderer.renderConfFileWithMountedConf(
+                    container,
+                    temporaryFolderManager,
+                    Files.readString(confFolder.resolve("NoNewline.conf")),
+                    "neo4j.conf"));
         }
+        Assertions.assertEquals(
+                expectedPageCacheSize,
+                configurations.get(confNames.get(Setting.MEMORY_PAGECACHE_SIZE).name),
+                "The plugin setting was appended to the last line of the conf file");
+        Assertions.assertEquals(
+                "apoc.*",
+                configurations.get(confNames.get(Setting.SECURITY_PROCEDURES_UNRESTRICTED).name),
+                "The apoc plugin settings were not added");
     }
 
     @Test
     void testSettingAppendsToConfFileWithoutEmptyLine_envSetting() throws Exception {
         String expectedHeapSize = "128.00MiB";
         String expectedPageCacheSize = "1000.00MiB";
-
+        Map<String, String> configurations;
         try (GenericContainer container = createContainer()) {
-            Path confMount = temporaryFolderManager.createFolderAndMountAsVolume(container, "/conf");
-            Files.copy(confFolder.resolve("NoNewline.conf"), confMount.resolve("neo4j.conf"));
             // set an env variable
-            container
-                    .withEnv(confNames.get(Setting.MEMORY_HEAP_MAXSIZE).envName, expectedHeapSize)
-                    .waitingFor(WaitStrategies.waitForNeo4jReady(PASSWORD));
-            // Start the container
-            container.start();
-            DatabaseIO dbio = new DatabaseIO(container);
-            dbio.verifyConfigurationSetting(
-                    "neo4j", PASSWORD, confNames.get(Setting.MEMORY_HEAP_MAXSIZE), expectedHeapSize);
-            dbio.verifyConfigurationSetting(
-                    "neo4j", PASSWORD, confNames.get(Setting.MEMORY_PAGECACHE_SIZE), expectedPageCacheSize);
+            container.withEnv(confNames.get(Setting.MEMORY_HEAP_MAXSIZE).envName, expectedHeapSize);
+            configurations = ConfigRenderer.parseConf(ConfigRenderer.renderConfFileWithMountedConf(
+                    container,
+                    temporaryFolderManager,
+                    Files.readString(confFolder.resolve("NoNewline.conf")),
+                    "neo4j.conf"));
         }
+        Assertions.assertEquals(
+                expectedHeapSize,
+                configurations.get(confNames.get(Setting.MEMORY_HEAP_MAXSIZE).name),
+                "The env setting was not added");
+        Assertions.assertEquals(
+                expectedPageCacheSize,
+                configurations.get(confNames.get(Setting.MEMORY_PAGECACHE_SIZE).name),
+                "The env setting was appended to the last line of the conf file");
     }
 
     @Test
@@ -467,21 +421,209 @@ public class TestConfSettings {
                 "Incorrect value written for APOC setting");
     }
 
+    @Test
+    void testEnvVarsReplaceAllOccurrencesInConfFile() throws Exception {
+        Assumptions.assumeTrue(
+                TestSettings.NEO4J_VERSION.isAtLeastVersion(new Neo4jVersion(5, 3, 0)),
+                "APOC conf not present before 5.0 and this bug wasn't fixed before 5.3.");
+
+        Path confMount;
+        try (GenericContainer container = createContainer()) {
+            container
+                    .withEnv(confNames.get(Setting.MEMORY_PAGECACHE_SIZE).envName, "1000m")
+                    .withEnv(confNames.get(Setting.MEMORY_HEAP_MAXSIZE).envName, "2000m")
+                    .withEnv(confNames.get(Setting.APOC_EXPORT_FILE_ENABLED).envName, "true");
+            confMount = temporaryFolderManager.createFolderAndMountAsVolume(container, "/conf");
+            Files.writeString(
+                    confMount.resolve("neo4j.conf"),
+                    String.join(
+                            "\n",
+                            confNames.get(Setting.MEMORY_PAGECACHE_SIZE).name + "=10m",
+                            confNames.get(Setting.MEMORY_HEAP_MAXSIZE).name + "=20m",
+                            confNames.get(Setting.MEMORY_PAGECACHE_SIZE).name + "=30m",
+                            ""));
+            makeContainerDumpConfig(container);
+            container.start();
+        }
+        List<String> neo4jConf = Files.readAllLines(confMount.resolve("neo4j.conf"));
+        for (Setting s : new Setting[] {Setting.MEMORY_PAGECACHE_SIZE, Setting.MEMORY_HEAP_MAXSIZE}) {
+            String name = confNames.get(s).name;
+            Assertions.assertEquals(
+                    1,
+                    neo4jConf.stream()
+                            .filter(line -> line.startsWith(name + "="))
+                            .count(),
+                    name + " should be in neo4j.conf exactly once");
+        }
+        Map<String, String> configurations =
+                parseConfFile(confMount.resolve("neo4j.conf").toFile());
+        Assertions.assertEquals("1000m", configurations.get(confNames.get(Setting.MEMORY_PAGECACHE_SIZE).name));
+        Assertions.assertEquals("2000m", configurations.get(confNames.get(Setting.MEMORY_HEAP_MAXSIZE).name));
+        Assertions.assertFalse(
+                configurations.containsKey(confNames.get(Setting.APOC_EXPORT_FILE_ENABLED).name),
+                "APOC setting should not be written to neo4j.conf");
+        Map<String, String> apocConfigurations =
+                parseConfFile(confMount.resolve("apoc.conf").toFile());
+        Assertions.assertEquals("true", apocConfigurations.get(confNames.get(Setting.APOC_EXPORT_FILE_ENABLED).name));
+    }
+
+    @Test
+    void testUnchangedConfigIsReusedOnRestart() throws Exception {
+        Assumptions.assumeTrue(
+                TestSettings.NEO4J_VERSION.isCalver(), "Reusing config on restart is only in calver images");
+
+        try (GenericContainer container = createContainer()
+                .withEnv(confNames.get(Setting.MEMORY_PAGECACHE_SIZE).envName, "1000m")
+                .waitingFor(WaitStrategies.waitForNeo4jReady(PASSWORD))) {
+            container.start();
+            ContainerRestart.restartAndWaitForNeo4jStarted(container, Duration.ofSeconds(180));
+
+            Assertions.assertEquals(
+                    1,
+                    ContainerRestart.countInLogs(container, "Configuration has not changed since the last start"),
+                    "Configuration should have been reused on the second start only");
+            Container.ExecResult pagecacheSettings = container.execInContainer(
+                    "grep", "-c", confNames.get(Setting.MEMORY_PAGECACHE_SIZE).name + "=1000m", "conf/neo4j.conf");
+            Assertions.assertEquals(
+                    "1",
+                    pagecacheSettings.getStdout().trim(),
+                    "Reused configuration should contain the setting from the environment exactly once");
+        }
+    }
+
+    @Test
+    void testChangedConfFileIsNotReusedOnRestart() throws Exception {
+        Assumptions.assumeTrue(
+                TestSettings.NEO4J_VERSION.isCalver(), "Reusing config on restart is only in calver images");
+
+        try (GenericContainer container = createContainer().waitingFor(WaitStrategies.waitForNeo4jReady(PASSWORD))) {
+            Path confMount = temporaryFolderManager.createFolderAndMountAsVolume(container, "/conf");
+            Files.copy(confFolder.resolve("ReadConf.conf"), confMount.resolve("neo4j.conf"));
+            SetContainerUser.nonRootUser(container);
+            container.start();
+
+            Files.writeString(
+                    confMount.resolve("neo4j.conf"),
+                    "\n" + confNames.get(Setting.MEMORY_PAGECACHE_SIZE).name + "=1000m\n",
+                    StandardOpenOption.APPEND);
+            ContainerRestart.restartAndWaitForNeo4jStarted(container, Duration.ofSeconds(180));
+
+            Assertions.assertEquals(
+                    0,
+                    ContainerRestart.countInLogs(container, "Configuration has not changed since the last start"),
+                    "Configuration should not be reused after the mounted conf file changed");
+            Container.ExecResult pagecacheSettings = container.execInContainer(
+                    "grep", "-c", confNames.get(Setting.MEMORY_PAGECACHE_SIZE).name + "=1000m", "conf/neo4j.conf");
+            Assertions.assertEquals(
+                    "1", pagecacheSettings.getStdout().trim(), "Changed conf file was not copied on restart");
+        }
+    }
+
+    @Test
+    void testRenderConfigDoesNotStartNeo4j() throws Exception {
+        Assumptions.assumeTrue(TestSettings.NEO4J_VERSION.isCalver(), "render-config is only in calver images");
+
+        Path dataMount;
+        Map<String, String> configurations;
+        String logs;
+        try (GenericContainer container = createContainer()
+                .withEnv("NEO4J_AUTH", "neo4j/SuperSecretPassword")
+                .withEnv(confNames.get(Setting.MEMORY_PAGECACHE_SIZE).envName, "1000m")) {
+            dataMount = temporaryFolderManager.createFolderAndMountAsVolume(container, "/data");
+            configurations = ConfigRenderer.renderNeo4jConf(container, temporaryFolderManager);
+            logs = container.getLogs();
+        }
+        Assertions.assertEquals("1000m", configurations.get(confNames.get(Setting.MEMORY_PAGECACHE_SIZE).name));
+        Assertions.assertEquals("0.0.0.0", configurations.get(confNames.get(Setting.DEFAULT_LISTEN_ADDRESS).name));
+        Assertions.assertFalse(
+                dataMount.resolve("dbms").resolve("auth.ini").toFile().exists(),
+                "render-config should not have set the initial password");
+        Assertions.assertFalse(logs.contains("Starting..."), "render-config should not have started neo4j");
+    }
+
+    @Test
+    void testRenderConfigPrintsApocConf() throws Exception {
+        Assumptions.assumeTrue(TestSettings.NEO4J_VERSION.isCalver(), "render-config is only in calver images");
+
+        String apocConf;
+        try (GenericContainer container =
+                createContainer().withEnv(confNames.get(Setting.APOC_EXPORT_FILE_ENABLED).envName, "true")) {
+            SetContainerUser.nonRootUser(container);
+            container.setCommand("render-config", "apoc.conf");
+            WaitStrategies.waitUntilContainerFinished(container, Duration.ofSeconds(30));
+            container.start();
+            apocConf = container.getLogs(OutputFrame.OutputType.STDOUT);
+        }
+        Assertions.assertEquals(
+                "true",
+                ConfigRenderer.parseConf(apocConf).get(confNames.get(Setting.APOC_EXPORT_FILE_ENABLED).name),
+                "APOC setting not rendered to apoc.conf");
+    }
+
+    @Test
+    void testConfPrecedenceReport() throws Exception {
+        Assumptions.assumeTrue(
+                TestSettings.NEO4J_VERSION.isCalver(), "Configuration layers are only reported in calver images");
+
+        String logs;
+        try (GenericContainer container = createContainer()
+                .withEnv("NEO4J_DEBUG", "true")
+                .withEnv(confNames.get(Setting.MEMORY_HEAP_MAXSIZE).envName, "2000m")) {
+            Path confMount = temporaryFolderManager.createFolderAndMountAsVolume(container, "/conf");
+            Files.writeString(
+                    confMount.resolve("neo4j.conf"), confNames.get(Setting.MEMORY_PAGECACHE_SIZE).name + "=1000m\n");
+            makeContainerDumpConfig(container);
+            container.start();
+            logs = container.getLogs();
+        }
+        Assertions.assertTrue(
+                logs.contains(confNames.get(Setting.MEMORY_PAGECACHE_SIZE).name + ": docker-defaults < conf"),
+                "Report should show the conf file overriding the docker default page cache size");
+        Assertions.assertTrue(
+                logs.contains(confNames.get(Setting.DEFAULT_LISTEN_ADDRESS).name + ": docker-defaults"),
+                "Report should show the docker default listen address being used");
+        Assertions.assertTrue(
+                logs.contains(confNames.get(Setting.MEMORY_HEAP_MAXSIZE).name + ": env"),
+                "Report should show the heap size set from the environment");
+    }
+
+    @Test
+    void testSecretSettingsKeepEnvironmentOrder() throws Exception {
+        Assumptions.assumeTrue(
+                TestSettings.NEO4J_VERSION.isCalver(), "Configuration layers are only recorded in calver images");
+
+        String neo4jConf;
+        try (GenericContainer container = createContainer()
+                .withEnv(confNames.get(Setting.MEMORY_PAGECACHE_SIZE).envName, "1000m")
+                .withEnv(confNames.get(Setting.MEMORY_HEAP_MAXSIZE).envName + "_FILE", "/secrets/heapsize")
+                .withEnv(confNames.get(Setting.MEMORY_HEAP_INITIALSIZE).envName, "500m")) {
+            Path secretsFolder = temporaryFolderManager.createFolderAndMountAsVolume(container, "/secrets");
+            Files.writeString(secretsFolder.resolve("heapsize"), "2000m");
+            neo4jConf = ConfigRenderer.renderConfFile(container, temporaryFolderManager, "neo4j.conf");
+        }
+        int pagecacheLine = neo4jConf.indexOf(confNames.get(Setting.MEMORY_PAGECACHE_SIZE).name + "=1000m");
+        int heapMaxLine = neo4jConf.indexOf(confNames.get(Setting.MEMORY_HEAP_MAXSIZE).name + "=2000m");
+        int heapInitialLine = neo4jConf.indexOf(confNames.get(Setting.MEMORY_HEAP_INITIALSIZE).name + "=500m");
+        Assertions.assertTrue(
+                pagecacheLine >= 0 && heapMaxLine >= 0 && heapInitialLine >= 0,
+                "Settings from the environment and from secrets were not all rendered:\n" + neo4jConf);
+        Assertions.assertTrue(
+                pagecacheLine < heapMaxLine && heapMaxLine < heapInitialLine,
+                "Settings from secrets should be written in the same order as the other environment settings:\n"
+                        + neo4jConf);
+    }
+
     @Test
     void testShellExpansionAvoided() throws Exception {
         Assumptions.assumeTrue(
                 TestSettings.NEO4J_VERSION.isAtLeastVersion(Neo4jVersion.NEO4J_VERSION_400),
                 "test only applicable to 4.0 and beyond.");
 
-        Path confMount;
+        Map<String, String> configurations;
         try (GenericContainer container =
                 createContainer().withEnv(confNames.get(Setting.SECURITY_PROCEDURES_UNRESTRICTED).envName, "*")) {
-            confMount = temporaryFolderManager.createFolderAndMountAsVolume(container, "/conf");
-            makeContainerDumpConfig(container);
-            container.start();
+            configurations = ConfigRenderer.renderNeo4jConf(container, temporaryFolderManager);
         }
-        File conf = confMount.resolve("neo4j.conf").toFile();
-        Map<String, String> configurations = parseConfFile(conf);
         Assertions.assertTrue(
                 configurations.containsKey(confNames.get(Setting.SECURITY_PROCEDURES_UNRESTRICTED).name),
                 "configuration not set from env var");
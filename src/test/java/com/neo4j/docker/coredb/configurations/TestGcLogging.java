@@ -0,0 +1,112 @@
+package com.neo4j.docker.coredb.configurations;
+
+import com.github.dockerjava.api.command.KillContainerCmd;
+import com.github.dockerjava.api.command.StopContainerCmd;
+import com.neo4j.docker.utils.DatabaseIO;
+import com.neo4j.docker.utils.SetContainerUser;
+import com.neo4j.docker.utils.TemporaryFolderManager;
+import com.neo4j.docker.utils.TestSettings;
+import com.neo4j.docker.utils.WaitStrategies;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.output.OutputFrame;
+import org.testcontainers.containers.output.Slf4jLogConsumer;
+
+public class TestGcLogging {
+    private final Logger log = LoggerFactory.getLogger(TestGcLogging.class);
+    private static Configuration jvmAdditional;
+    private static Configuration gcRotationKeepNumber;
+
+    @RegisterExtension
+    public static TemporaryFolderManager temporaryFolderManager = new TemporaryFolderManager();
+
+    @BeforeAll
+    static void getVersionSpecificConfigurationSettings() {
+        Assumptions.assumeTrue(TestSettings.NEO4J_VERSION.isCalver(), "NEO4J_GC_LOGGING is only in calver images");
+        jvmAdditional = Configuration.getConfigurationNameMap().get(Setting.JVM_ADDITIONAL);
+        gcRotationKeepNumber = Configuration.getConfigurationNameMap().get(Setting.LOGS_GC_ROTATION_KEEPNUMBER);
+    }
+
+    private GenericContainer createContainer() {
+        return new GenericContainer(TestSettings.IMAGE_ID)
+                .withEnv("NEO4J_AUTH", "none")
+                .withEnv("NEO4J_ACCEPT_LICENSE_AGREEMENT", "yes")
+                .withEnv("NEO4J_GC_LOGGING", "on")
+                .withExposedPorts(7474, 7687)
+                .withLogConsumer(new Slf4jLogConsumer(log));
+    }
+
+    @Test
+    void testGcLogIsRotatedWithNeo4jGcSettings() throws Exception {
+        String neo4jConf;
+        try (GenericContainer container = createContainer().withEnv(gcRotationKeepNumber.envName, "3")) {
+            temporaryFolderManager.createFolderAndMountAsVolume(container, "/logs");
+            neo4jConf = ConfigRenderer.renderConfFile(container, temporaryFolderManager, "neo4j.conf");
+        }
+        Assertions.assertTrue(
+                neo4jConf.contains(jvmAdditional.name
+                        + "=-Xlog:gc*,safepoint:file=/logs/gc/gc.log:time,uptime,level,tags:filecount=3,filesize=20m"),
+                "GC logging was not turned on with the rotation from " + gcRotationKeepNumber.name + ":\n" + neo4jConf);
+    }
+
+    @Test
+    void testExistingGcLoggingTakesPrecedence() throws Exception {
+        String neo4jConf;
+        try (GenericContainer container =
+                createContainer().withEnv(jvmAdditional.envName, "-Xlog:gc:file=/logs/my-gc.log")) {
+            temporaryFolderManager.createFolderAndMountAsVolume(container, "/logs");
+            neo4jConf = ConfigRenderer.renderConfFile(container, temporaryFolderManager, "neo4j.conf");
+        }
+        Assertions.assertTrue(
+                neo4jConf.contains(jvmAdditional.name + "=-Xlog:gc:file=/logs/my-gc.log"),
+                "The user's GC logging was removed");
+        Assertions.assertFalse(neo4jConf.contains("/logs/gc/gc.log"), "GC logging was configured twice");
+    }
+
+    @ParameterizedTest(name = "ascurrentuser_{0}")
+    @ValueSource(booleans = {true, false})
+    void testGcSummaryIsPrintedAtShutdown(boolean asCurrentUser) throws Exception {
+        try (GenericContainer container = createContainer().waitingFor(WaitStrategies.waitForNeo4jReady("none"))) {
+            if (asCurrentUser) {
+                SetContainerUser.nonRootUser(container);
+            }
+            Path logsMount = temporaryFolderManager.createFolderAndMountAsVolume(container, "/logs");
+            container.start();
+            new DatabaseIO(container).putInitialDataIntoContainer("neo4j", "none");
+            try (KillContainerCmd kill = container.getDockerClient().killContainerCmd(container.getContainerId());
+                    StopContainerCmd stop = container.getDockerClient().stopContainerCmd(container.getContainerId())) {
+                kill.withSignal("SIGTERM").exec();
+                stop.withTimeout(30).exec();
+            }
+            String stdout = container.getLogs(OutputFrame.OutputType.STDOUT);
+            Assertions.assertTrue(
+                    stdout.contains("Stopped."), "neo4j did not shut down cleanly with GC logging on:\n" + stdout);
+            Assertions.assertTrue(
+                    stdout.matches("(?s).*GC summary: [0-9]+ pauses, p50 [0-9.]+ms, p99 [0-9.]+ms.*"),
+                    "There was no GC summary at shutdown:\n" + stdout);
+            Assertions.assertTrue(Files.exists(logsMount.resolve("gc").resolve("gc.log")), "There is no GC log");
+        }
+    }
+
+    @Test
+    void testInvalidValueFails() {
+        try (GenericContainer container = createContainer().withEnv("NEO4J_GC_LOGGING", "true")) {
+            WaitStrategies.waitUntilContainerFinished(container, Duration.ofSeconds(30));
+            container.start();
+            Assertions.assertTrue(
+                    container.getLogs(OutputFrame.OutputType.STDERR).contains("Invalid value for NEO4J_GC_LOGGING"),
+                    "Invalid NEO4J_GC_LOGGING value did not give an error");
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.neo4j.docker.coredb.configurations;
+
+import com.github.dockerjava.api.command.CreateContainerCmd;
+import com.neo4j.docker.utils.ContainerRestart;
+import com.neo4j.docker.utils.TemporaryFolderManager;
+import com.neo4j.docker.utils.TestSettings;
+import com.neo4j.docker.utils.WaitStrategies;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.output.OutputFrame;
+import org.testcontainers.containers.output.Slf4jLogConsumer;
+
+public class TestHeapDumpOnOom {
+    private final Logger log = LoggerFactory.getLogger(TestHeapDumpOnOom.class);
+    private static Configuration jvmAdditional;
+    private static Configuration heapMaxSize;
+    private static final long MEMORY_LIMIT_1_5GB = 1536L * 1024 * 1024;
+    private static final long MEMORY_LIMIT_4GB = 4096L * 1024 * 1024;
+
+    @RegisterExtension
+    public static TemporaryFolderManager temporaryFolderManager = new TemporaryFolderManager();
+
+    @BeforeAll
+    static void getVersionSpecificConfigurationSettings() {
+        Assumptions.assumeTrue(TestSettings.NEO4J_VERSION.isCalver(), "Guarded heap dumps are only in calver images");
+        jvmAdditional = Configuration.getConfigurationNameMap().get(Setting.JVM_ADDITIONAL);
+        heapMaxSize = Configuration.getConfigurationNameMap().get(Setting.MEMORY_HEAP_MAXSIZE);
+    }
+
+    private GenericContainer createContainer() {
+        return new GenericContainer(TestSettings.IMAGE_ID)
+                .withEnv("NEO4J_AUTH", "none")
+                .withEnv("NEO4J_ACCEPT_LICENSE_AGREEMENT", "yes")
+                .withEnv("NEO4J_HEAP_DUMP_ON_OOM", "true")
+                .withExposedPorts(7474, 7687)
+                .withLogConsumer(new Slf4jLogConsumer(log));
+    }
+
+    @Test
+    void testHeapDumpFlagsAreSetWhenThereIsSpace() throws Exception {
+        String neo4jConf;
+        try (GenericContainer container = createContainer().withEnv(heapMaxSize.envName, "256m")) {
+            temporaryFolderManager.createFolderAndMountAsVolume(container, "/logs");
+            neo4jConf = ConfigRenderer.renderConfFile(container, temporaryFolderManager, "neo4j.conf");
+        }
+        Assertions.assertTrue(
+                neo4jConf.contains(jvmAdditional.name + "=-XX:+HeapDumpOnOutOfMemoryError"),
+                "Heap dumps on OutOfMemoryError were not turned on");
+        Assertions.assertTrue(
+                neo4jConf.contains(jvmAdditional.name + "=-XX:HeapDumpPath=/logs/heap-dumps"),
+                "Heap dumps do not go to /logs/heap-dumps");
+    }
+
+    @Test
+    void testWarnsInsteadWhenThereIsNotEnoughSpace() throws Exception {
+        String neo4jConf;
+        String stderr;
+        try (GenericContainer container = createContainer().withEnv(heapMaxSize.envName, "1000t")) {
+            temporaryFolderManager.createFolderAndMountAsVolume(container, "/logs");
+            neo4jConf = ConfigRenderer.renderConfFile(container, temporaryFolderManager, "neo4j.conf");
+            stderr = container.getLogs(OutputFrame.OutputType.STDERR);
+        }
+        Assertions.assertFalse(
+                neo4jConf.contains("-XX:+HeapDumpOnOutOfMemoryError"),
+                "Heap dumps were turned on without enough space for them");
+        Assertions.assertTrue(
+                stderr.contains("WARNING: Heap dumps are not turned on"),
+                "There was no warning about the lack of space:\n" + stderr);
+    }
+
+    @Test
+    void testHeapDumpOptionsFromUserAreKept() throws Exception {
+        String neo4jConf;
+        String stderr;
+        try (GenericContainer container = createContainer()
+                .withEnv(heapMaxSize.envName, "1000t")
+                .withEnv(jvmAdditional.envName, "-XX:+HeapDumpOnOutOfMemoryError\n-XX:HeapDumpPath=/logs/my-dumps")) {
+            temporaryFolderManager.createFolderAndMountAsVolume(container, "/logs");
+            neo4jConf = ConfigRenderer.renderConfFile(container, temporaryFolderManager, "neo4j.conf");
+            stderr = container.getLogs(OutputFrame.OutputType.STDERR);
+        }
+        Assertions.assertTrue(
+                neo4jConf.contains(jvmAdditional.name + "=-XX:+HeapDumpOnOutOfMemoryError"),
+                "The heap dump option set by the user was removed");
+        Assertions.assertTrue(
+                neo4jConf.contains("-XX:HeapDumpPath=/logs/my-dumps"),
+                "The heap dump path set by the user was removed");
+        Assertions.assertFalse(neo4jConf.contains("/logs/heap-dumps"), "The heap dump path should not be set twice");
+        Assertions.assertTrue(
+                stderr.contains("NEO4J_HEAP_DUMP_ON_OOM is not used"),
+                "There was no warning that the user's heap dump options are used instead:\n" + stderr);
+    }
+
+    @Test
+    void testHeapDumpFlagsAreRemovedOnRestartWithoutEnoughSpace() throws Exception {
+        // /logs is a 1GiB tmpfs, with room for the heap sized from a 1536MiB memory limit (409MiB),
+        // but not for the heap sized from a 4GiB limit (1228MiB).
+        try (GenericContainer container = createContainer()
+                .withEnv("NEO4J_AUTO_MEMORY", "true")
+                .withTmpFs(Map.of("/logs", "rw,size=1g"))
+                .withCreateContainerCmdModifier((Consumer<CreateContainerCmd>)
+                        cmd -> cmd.getHostConfig().withMemory(MEMORY_LIMIT_1_5GB))
+                .waitingFor(WaitStrategies.waitForBoltReady())) {
+            container.start();
+            Assertions.assertTrue(
+                    container
+                            .execInContainer("cat", "conf/neo4j.conf")
+                            .getStdout()
+                            .contains("-XX:+HeapDumpOnOutOfMemoryError"),
+                    "Heap dumps on OutOfMemoryError were not turned on for the first start");
+
+            // same as: docker update --memory=4g
+            container
+                    .getDockerClient()
+                    .updateContainerCmd(container.getContainerId())
+                    .withMemory(MEMORY_LIMIT_4GB)
+                    .withMemorySwap(MEMORY_LIMIT_4GB)
+                    .exec();
+            ContainerRestart.restartAndWaitForNeo4jStarted(container, Duration.ofSeconds(180));
+
+            String neo4jConf =
+                    container.execInContainer("cat", "conf/neo4j.conf").getStdout();
+            Assertions.assertFalse(
+                    neo4jConf.contains("-XX:+HeapDumpOnOutOfMemoryError"),
+                    "Heap dumps from the last start were kept without enough space for them:\n" + neo4jConf);
+            Assertions.assertFalse(
+                    neo4jConf.contains("-XX:HeapDumpPath="),
+                    "The heap dump path from the last start was kept:\n" + neo4jConf);
+            Assertions.assertTrue(
+                    container.getLogs(OutputFrame.OutputType.STDERR).contains("WARNING: Heap dumps are not turned on"),
+                    "There was no warning about the lack of space on restart");
+        }
+    }
+
+    @Test
+    void testOldHeapDumpsAreRotatedAndPruned() throws Exception {
+        try (GenericContainer container =
+                createContainer().withEnv(heapMaxSize.envName, "256m").withEnv("NEO4J_HEAP_DUMP_KEEP", "2")) {
+            Path logsMount = temporaryFolderManager.createFolderAndMountAsVolume(container, "/logs");
+            Path dumps = Files.createDirectory(logsMount.resolve("heap-dumps"));
+            Instant now = Instant.now();
+            Files.setLastModifiedTime(
+                    Files.createFile(dumps.resolve("heap-dump-20200101T000000Z-pid7.hprof")),
+                    FileTime.from(now.minus(Duration.ofDays(300))));
+            Files.setLastModifiedTime(
+                    Files.createFile(dumps.resolve("heap-dump-20200601T000000Z-pid7.hprof")),
+                    FileTime.from(now.minus(Duration.ofDays(100))));
+            Files.createFile(dumps.resolve("java_pid7.hprof"));
+            ConfigRenderer.renderConfFile(container, temporaryFolderManager, "neo4j.conf");
+
+            List<String> remaining;
+            try (var files = Files.list(dumps)) {
+                remaining = files.map(file -> file.getFileName().toString())
+                        .sorted()
+                        .toList();
+            }
+            Assertions.assertEquals(2, remaining.size(), "Expected two heap dumps to be kept, found " + remaining);
+            Assertions.assertTrue(
+                    remaining.contains("heap-dump-20200601T000000Z-pid7.hprof"), "The newer old dump was removed");
+            Assertions.assertTrue(
+                    remaining.stream()
+                            .anyMatch(name -> name.matches("heap-dump-[0-9TZ]+-pid7\\.hprof")
+                                    && !name.startsWith("heap-dump-2020")),
+                    "The last heap dump was not renamed so that a new dump can be written: " + remaining);
+        }
+    }
+
+    @Test
+    void testInvalidValueFails() {
+        try (GenericContainer container = createContainer().withEnv("NEO4J_HEAP_DUMP_ON_OOM", "yes")) {
+            WaitStrategies.waitUntilContainerFinished(container, Duration.ofSeconds(30));
+            container.start();
+            Assertions.assertTrue(
+                    container
+                            .getLogs(OutputFrame.OutputType.STDERR)
+                            .contains("Invalid value for NEO4J_HEAP_DUMP_ON_OOM"),
+                    "Invalid NEO4J_HEAP_DUMP_ON_OOM value did not give an error");
+        }
+    }
+}
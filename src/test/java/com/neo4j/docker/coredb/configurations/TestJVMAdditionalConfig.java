@@ -1,6 +1,5 @@
 package com.neo4j.docker.coredb.configurations;
 
-import com.neo4j.docker.utils.DatabaseIO;
 import com.neo4j.docker.utils.Neo4jVersion;
 import com.neo4j.docker.utils.SetContainerUser;
 import com.neo4j.docker.utils.TemporaryFolderManager;
@@ -8,14 +7,18 @@ import com.neo4j.docker.utils.TestSettings;
 import com.neo4j.docker.utils.WaitStrategies;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.List;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Assumptions;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.output.OutputFrame;
 import org.testcontainers.containers.output.Slf4jLogConsumer;
 
 public class TestJVMAdditionalConfig {
@@ -63,20 +66,14 @@ public class TestJVMAdditionalConfig {
     }
 
     void testJvmAdditionalNotOverridden(String expectedJvmAdditional, String jvmAdditionalEnv) throws Exception {
+        String neo4jConf;
         try (GenericContainer container = createContainer()) {
-            // Mount /conf
-            Path confMount = temporaryFolderManager.createFolderAndMountAsVolume(container, "/conf");
-            SetContainerUser.nonRootUser(container);
             container.withEnv(JVM_ADDITIONAL_CONFIG.envName, jvmAdditionalEnv);
-            // Create JvmAdditionalNotOverridden.conf file
-            Path confFile = confFolder.resolve("JvmAdditionalNotOverridden.conf");
-            Files.copy(confFile, confMount.resolve("neo4j.conf"));
-            // Start the container
-            container.start();
-            // verify setting correctly loaded into neo4j
-            DatabaseIO dbio = new DatabaseIO(container);
-            dbio.verifyConfigurationSetting("neo4j", PASSWORD, JVM_ADDITIONAL_CONFIG, expectedJvmAdditional);
+            String confContents = Files.readString(confFolder.resolve("JvmAdditionalNotOverridden.conf"));
+            neo4jConf = ConfigRenderer.renderConfFileWithMountedConf(
+                    container, temporaryFolderManager, confContents, "neo4j.conf");
         }
+        assertJvmAdditionalContains(neo4jConf, expectedJvmAdditional.split("\\n"));
     }
 
     @Test
@@ -109,15 +106,13 @@ public class TestJVMAdditionalConfig {
     }
 
     void testJvmAdditionalSpecialCharacters_conf(String charName, String expectedJvmAdditional) throws Exception {
+        String neo4jConf;
         try (GenericContainer container = createContainer()) {
-            // Mount /conf
-            Path confMount = temporaryFolderManager.createFolderAndMountAsVolume(container, "/conf");
-            // copy test conf file
-            String confContent = JVM_ADDITIONAL_CONFIG.name + "=" + expectedJvmAdditional;
-            Files.write(confMount.resolve("neo4j.conf"), confContent.getBytes());
-            // Start the container
-            verifyJvmAdditional(container, expectedJvmAdditional);
+            String confContents = JVM_ADDITIONAL_CONFIG.name + "=" + expectedJvmAdditional;
+            neo4jConf = ConfigRenderer.renderConfFileWithMountedConf(
+                    container, temporaryFolderManager, confContents, "neo4j.conf");
         }
+        assertJvmAdditionalContains(neo4jConf, expectedJvmAdditional);
     }
 
     void testJvmAdditionalSpecialCharacters_env(String expectedJvmAdditional) throws Exception {
@@ -127,16 +122,76 @@ public class TestJVMAdditionalConfig {
         }
     }
 
-    void verifyJvmAdditional(GenericContainer container, String... expectedValues) {
-        SetContainerUser.nonRootUser(container);
-        // Start the container
-        container.start();
-        // verify setting correctly loaded into neo4j
-        DatabaseIO dbio = new DatabaseIO(container);
-        String actualConfValue = dbio.getConfigurationSettingAsString("neo4j", PASSWORD, JVM_ADDITIONAL_CONFIG);
+    @ParameterizedTest(name = "{0}")
+    @CsvSource({"low-latency, Using The Z Garbage Collector", "balanced, Using G1", "throughput, Using Parallel"})
+    void testGcProfileIsUsed(String profile, String expectedGcLogLine) throws Exception {
+        Assumptions.assumeTrue(TestSettings.NEO4J_VERSION.isCalver(), "GC profiles are only in calver images");
+        Path logMount;
+        try (GenericContainer container = createContainer()) {
+            logMount = temporaryFolderManager.createFolderAndMountAsVolume(container, "/logs");
+            container.withEnv("NEO4J_GC_PROFILE", profile).withEnv("NEO4J_server_logs_gc_enabled", "true");
+            SetContainerUser.nonRootUser(container);
+            container.start();
+        }
+        String gcLog = Files.readString(logMount.resolve("gc.log"));
+        Assertions.assertTrue(
+                gcLog.contains(expectedGcLogLine),
+                "GC log does not show that the " + profile + " GC profile was used. Expected: " + expectedGcLogLine);
+    }
+
+    @Test
+    void testGcProfileDoesNotOverrideGcFromEnv() throws Exception {
+        Assumptions.assumeTrue(TestSettings.NEO4J_VERSION.isCalver(), "GC profiles are only in calver images");
+        String neo4jConf;
+        try (GenericContainer container = createContainer()) {
+            container
+                    .withEnv("NEO4J_GC_PROFILE", "throughput")
+                    .withEnv(JVM_ADDITIONAL_CONFIG.envName, "-XX:+UseSerialGC");
+            neo4jConf = ConfigRenderer.renderConfFile(container, temporaryFolderManager, "neo4j.conf");
+        }
+        Assertions.assertTrue(
+                neo4jConf.contains(JVM_ADDITIONAL_CONFIG.name + "=-XX:+UseSerialGC"), "GC set by the user was removed");
+        Assertions.assertFalse(
+                neo4jConf.contains("-XX:+UseParallelGC"), "GC profile should not be used when the user selects a GC");
+    }
+
+    @Test
+    void testGcProfileDoesNotOverrideGcFromConf() throws Exception {
+        Assumptions.assumeTrue(TestSettings.NEO4J_VERSION.isCalver(), "GC profiles are only in calver images");
+        String neo4jConf;
+        try (GenericContainer container = createContainer()) {
+            container.withEnv("NEO4J_GC_PROFILE", "throughput");
+            neo4jConf = ConfigRenderer.renderConfFileWithMountedConf(
+                    container,
+                    temporaryFolderManager,
+                    JVM_ADDITIONAL_CONFIG.name + "=-XX:+UseSerialGC\n",
+                    "neo4j.conf");
+            Assertions.assertTrue(
+                    container
+                            .getLogs(OutputFrame.OutputType.STDERR)
+                            .contains("NEO4J_GC_PROFILE=throughput is not used"),
+                    "There was no warning that the GC profile was not used");
+        }
+        assertJvmAdditionalContains(neo4jConf, "-XX:+UseSerialGC");
+        Assertions.assertFalse(
+                neo4jConf.contains("-XX:+UseParallelGC"), "GC profile should not be used when the conf selects a GC");
+    }
+
+    void verifyJvmAdditional(GenericContainer container, String... expectedValues) throws Exception {
+        assertJvmAdditionalContains(
+                ConfigRenderer.renderConfFile(container, temporaryFolderManager, "neo4j.conf"), expectedValues);
+    }
 
+    private void assertJvmAdditionalContains(String neo4jConf, String... expectedValues) {
+        List<String> jvmAdditionalLines = neo4jConf
+                .lines()
+                .filter(line -> line.startsWith(JVM_ADDITIONAL_CONFIG.name + "="))
+                .map(line -> line.substring(JVM_ADDITIONAL_CONFIG.name.length() + 1))
+                .toList();
         for (String expectedJvmAdditional : expectedValues) {
-            Assertions.assertTrue(actualConfValue.contains(expectedJvmAdditional));
+            Assertions.assertTrue(
+                    jvmAdditionalLines.contains(expectedJvmAdditional),
+                    "Expected " + JVM_ADDITIONAL_CONFIG.name + "=" + expectedJvmAdditional + " in:\n" + neo4jConf);
         }
     }
 }
@@ -0,0 +1,134 @@
+package com.neo4j.docker.coredb.configurations;
+
+import com.neo4j.docker.utils.TemporaryFolderManager;
+import com.neo4j.docker.utils.TestSettings;
+import com.neo4j.docker.utils.WaitStrategies;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.output.OutputFrame;
+import org.testcontainers.containers.output.Slf4jLogConsumer;
+
+public class TestLargePages {
+    private final Logger log = LoggerFactory.getLogger(TestLargePages.class);
+    private static final String THP_FILE = "/sys/kernel/mm/transparent_hugepage/enabled";
+    private static Configuration jvmAdditional;
+
+    @RegisterExtension
+    public static TemporaryFolderManager temporaryFolderManager = new TemporaryFolderManager();
+
+    @BeforeAll
+    static void getVersionSpecificConfigurationSettings() {
+        Assumptions.assumeTrue(TestSettings.NEO4J_VERSION.isCalver(), "Large pages preset is only in calver images");
+        jvmAdditional = Configuration.getConfigurationNameMap().get(Setting.JVM_ADDITIONAL);
+    }
+
+    private GenericContainer createContainer() {
+        return new GenericContainer(TestSettings.IMAGE_ID)
+                .withEnv("NEO4J_AUTH", "none")
+                .withEnv("NEO4J_ACCEPT_LICENSE_AGREEMENT", "yes")
+                .withExposedPorts(7474, 7687)
+                .withLogConsumer(new Slf4jLogConsumer(log));
+    }
+
+    private static boolean hostHasTransparentHugePages() throws Exception {
+        // containers see the host kernel's setting, so the test host's setting is what the container will find.
+        Path thpFile = Path.of(THP_FILE);
+        if (!Files.isReadable(thpFile)) {
+            return false;
+        }
+        Matcher mode = Pattern.compile("\\[([a-z]+)]").matcher(Files.readString(thpFile));
+        return mode.find() && !mode.group(1).equals("never");
+    }
+
+    private static long countJvmAdditional(String neo4jConf, String option) {
+        return neo4jConf
+                .lines()
+                .filter(line -> line.equals(jvmAdditional.name + "=" + option))
+                .count();
+    }
+
+    @Test
+    void testLargePagesAutoMatchesHost() throws Exception {
+        String neo4jConf;
+        try (GenericContainer container = createContainer().withEnv("NEO4J_LARGE_PAGES", "auto")) {
+            neo4jConf = ConfigRenderer.renderConfFile(container, temporaryFolderManager, "neo4j.conf");
+        }
+        Assertions.assertEquals(
+                hostHasTransparentHugePages(),
+                neo4jConf.contains(jvmAdditional.name + "=-XX:+UseTransparentHugePages"),
+                "Transparent huge pages should be used if and only if the host has them");
+        // neo4j.conf already pre-touches the heap, so the preset should not add a second line for it.
+        Assertions.assertEquals(
+                1,
+                countJvmAdditional(neo4jConf, "-XX:+AlwaysPreTouch"),
+                "Pre-touch should be set exactly once:\n" + neo4jConf);
+    }
+
+    @Test
+    void testLargePagesOffByDefault() throws Exception {
+        String neo4jConf;
+        try (GenericContainer container = createContainer()) {
+            neo4jConf = ConfigRenderer.renderConfFile(container, temporaryFolderManager, "neo4j.conf");
+        }
+        Assertions.assertFalse(
+                neo4jConf.contains("-XX:+UseTransparentHugePages"), "Large pages should not be used by default");
+        Assertions.assertEquals(
+                1,
+                countJvmAdditional(neo4jConf, "-XX:+AlwaysPreTouch"),
+                "The pre-touch setting that neo4j.conf ships with should be kept by default:\n" + neo4jConf);
+    }
+
+    @Test
+    void testUserCanDisablePreTouch() throws Exception {
+        Assumptions.assumeTrue(hostHasTransparentHugePages(), "Host does not have transparent huge pages");
+        String neo4jConf;
+        try (GenericContainer container = createContainer()
+                .withEnv("NEO4J_LARGE_PAGES", "auto")
+                .withEnv(jvmAdditional.envName, "-XX:-AlwaysPreTouch")) {
+            neo4jConf = ConfigRenderer.renderConfFile(container, temporaryFolderManager, "neo4j.conf");
+        }
+        Assertions.assertTrue(
+                neo4jConf.contains(jvmAdditional.name + "=-XX:+UseTransparentHugePages"),
+                "Transparent huge pages were not used");
+        Assertions.assertEquals(
+                1,
+                countJvmAdditional(neo4jConf, "-XX:-AlwaysPreTouch"),
+                "The pre-touch setting of the user was not kept:\n" + neo4jConf);
+        Assertions.assertEquals(
+                0,
+                countJvmAdditional(neo4jConf, "-XX:+AlwaysPreTouch"),
+                "The default pre-touch setting should be removed when the user turns pre-touch off:\n" + neo4jConf);
+    }
+
+    @Test
+    void testNeo4jStartsWithLargePagesAuto() {
+        // whether or not the host has transparent huge pages, neo4j should start rather than fail on the JVM options.
+        try (GenericContainer container =
+                createContainer().withEnv("NEO4J_LARGE_PAGES", "auto").waitingFor(WaitStrategies.waitForBoltReady())) {
+            container.start();
+            Assertions.assertTrue(container.isRunning(), "neo4j did not start with NEO4J_LARGE_PAGES=auto");
+        }
+    }
+
+    @Test
+    void testInvalidValueFails() {
+        try (GenericContainer container = createContainer().withEnv("NEO4J_LARGE_PAGES", "yes")) {
+            WaitStrategies.waitUntilContainerFinished(container, Duration.ofSeconds(30));
+            container.start();
+            Assertions.assertTrue(
+                    container.getLogs(OutputFrame.OutputType.STDERR).contains("Invalid value for NEO4J_LARGE_PAGES"),
+                    "Invalid NEO4J_LARGE_PAGES value did not give an error");
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.neo4j.docker.coredb.configurations;
+
+import com.github.dockerjava.api.command.CreateContainerCmd;
+import com.neo4j.docker.utils.TestSettings;
+import com.neo4j.docker.utils.WaitStrategies;
+import java.time.Duration;
+import java.util.Map;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testcontainers.containers.ContainerLaunchException;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.output.OutputFrame;
+import org.testcontainers.containers.output.Slf4jLogConsumer;
+
+public class TestMemoryCheck {
+    private final Logger log = LoggerFactory.getLogger(TestMemoryCheck.class);
+    private static final long MEMORY_LIMIT_2GB = 2048L * 1024 * 1024;
+    private static Map<Setting, Configuration> confNames;
+
+    @BeforeAll
+    static void getVersionSpecificConfigurationSettings() {
+        Assumptions.assumeTrue(TestSettings.NEO4J_VERSION.isCalver(), "Memory budget checks are only in calver images");
+        confNames = Configuration.getConfigurationNameMap();
+    }
+
+    private GenericContainer createOvercommittedContainer() {
+        // the page cache is allocated lazily, so neo4j can still start with a page cache bigger than the container.
+        return new GenericContainer(TestSettings.IMAGE_ID)
+                .withEnv("NEO4J_AUTH", "none")
+                .withEnv("NEO4J_ACCEPT_LICENSE_AGREEMENT", "yes")
+                .withEnv(confNames.get(Setting.MEMORY_HEAP_MAXSIZE).envName, "512m")
+                .withEnv(confNames.get(Setting.MEMORY_PAGECACHE_SIZE).envName, "3g")
+                .withExposedPorts(7474, 7687)
+                .withCreateContainerCmdModifier((Consumer<CreateContainerCmd>)
+                        cmd -> cmd.getHostConfig().withMemory(MEMORY_LIMIT_2GB))
+                .withLogConsumer(new Slf4jLogConsumer(log));
+    }
+
+    @Test
+    void testOvercommittedMemoryWarnsByDefault() {
+        try (GenericContainer container =
+                createOvercommittedContainer().waitingFor(WaitStrategies.waitForBoltReady())) {
+            container.start();
+            String errors = container.getLogs(OutputFrame.OutputType.STDERR);
+            Assertions.assertTrue(
+                    errors.contains("WARNING: Neo4j is configured to use more memory than the container memory limit"),
+                    "Did not warn about memory settings over the container limit. Actual errors:\n" + errors);
+            Assertions.assertTrue(errors.contains("total: 3584MiB"), "Memory breakdown is missing or wrong");
+            Assertions.assertTrue(
+                    errors.contains(confNames.get(Setting.MEMORY_PAGECACHE_SIZE).name + "=769m"),
+                    "Did not suggest a memory split that fits the container");
+        }
+    }
+
+    @Test
+    void testOvercommittedMemoryFailsInStrictMode() {
+        try (GenericContainer container = createOvercommittedContainer().withEnv("NEO4J_MEMORY_CHECK", "strict")) {
+            WaitStrategies.waitUntilContainerFinished(container, Duration.ofSeconds(30));
+            Assertions.assertThrows(
+                    ContainerLaunchException.class,
+                    container::start,
+                    "Neo4j started even though memory is overcommitted and NEO4J_MEMORY_CHECK=strict");
+            Assertions.assertTrue(
+                    container.getLogs(OutputFrame.OutputType.STDERR).contains("ERROR: Neo4j is configured to use more"),
+                    "Did not explain why Neo4j refused to start");
+        }
+    }
+
+    @Test
+    void testMemoryCheckCanBeDisabled() {
+        try (GenericContainer container = createOvercommittedContainer()
+                .withEnv("NEO4J_MEMORY_CHECK", "off")
+                .waitingFor(WaitStrategies.waitForBoltReady())) {
+            container.start();
+            Assertions.assertFalse(
+                    container.getLogs().contains("configured to use more memory than the container memory limit"),
+                    "Memory check should not run when NEO4J_MEMORY_CHECK=off");
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.neo4j.docker.coredb.configurations;
+
+import com.neo4j.docker.utils.BaseOS;
+import com.neo4j.docker.utils.DatabaseIO;
+import com.neo4j.docker.utils.Measurements;
+import com.neo4j.docker.utils.TemporaryFolderManager;
+import com.neo4j.docker.utils.TestSettings;
+import com.neo4j.docker.utils.WaitStrategies;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testcontainers.containers.Container;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.output.Slf4jLogConsumer;
+
+public class TestMemoryFootprint {
+    private final Logger log = LoggerFactory.getLogger(TestMemoryFootprint.class);
+    private static Configuration jvmAdditional;
+
+    @RegisterExtension
+    public static TemporaryFolderManager temporaryFolderManager = new TemporaryFolderManager();
+
+    @BeforeAll
+    static void getVersionSpecificConfigurationSettings() {
+        Assumptions.assumeTrue(
+                TestSettings.NEO4J_VERSION.isCalver(), "Low memory footprint mode is only in calver images");
+        jvmAdditional = Configuration.getConfigurationNameMap().get(Setting.JVM_ADDITIONAL);
+    }
+
+    private GenericContainer createContainer() {
+        return new GenericContainer(TestSettings.IMAGE_ID)
+                .withEnv("NEO4J_AUTH", "none")
+                .withEnv("NEO4J_ACCEPT_LICENSE_AGREEMENT", "yes")
+                .withExposedPorts(7474, 7687)
+                .withLogConsumer(new Slf4jLogConsumer(log));
+    }
+
+    private static boolean imageHasJava25() {
+        return TestSettings.BASE_OS == BaseOS.TRIXIE || TestSettings.BASE_OS == BaseOS.UBI10;
+    }
+
+    private long getNeo4jRssKb(String memoryFootprint) throws Exception {
+        try (GenericContainer container = createContainer().waitingFor(WaitStrategies.waitForBoltReady())) {
+            if (memoryFootprint != null) {
+                container.withEnv("NEO4J_MEMORY_FOOTPRINT", memoryFootprint);
+            }
+            container.start();
+            // run something so that the measurement is not just of an idle JVM
+            new DatabaseIO(container).putInitialDataIntoContainer("neo4j", "none");
+            Container.ExecResult rss = container.execInContainer("ps", "-o", "rss=", "-C", "java");
+            log.info(
+                    "RSS with NEO4J_MEMORY_FOOTPRINT={}: {}kB",
+                    memoryFootprint,
+                    rss.getStdout().trim());
+            return Long.parseLong(rss.getStdout().trim());
+        }
+    }
+
+    @Test
+    void testLowFootprintJvmOptionsAreSet() throws Exception {
+        String neo4jConf;
+        try (GenericContainer container = createContainer().withEnv("NEO4J_MEMORY_FOOTPRINT", "low")) {
+            neo4jConf = ConfigRenderer.renderConfFile(container, temporaryFolderManager, "neo4j.conf");
+        }
+        for (String option : new String[] {
+            "-XX:+UseStringDeduplication",
+            "-XX:ReservedCodeCacheSize=128m",
+            "-XX:MaxMetaspaceSize=384m",
+            "-XX:ThreadStackSize=512"
+        }) {
+            Assertions.assertTrue(
+                    neo4jConf.contains(jvmAdditional.name + "=" + option), option + " was not added to neo4j.conf");
+        }
+        Assertions.assertEquals(
+                imageHasJava25(),
+                neo4jConf.contains(jvmAdditional.name + "=-XX:+UseCompactObjectHeaders"),
+                "Compact object headers should be used if and only if the image has Java 25");
+    }
+
+    @Test
+    void testLowFootprintDoesNotOverrideUserStackSize() throws Exception {
+        String neo4jConf;
+        try (GenericContainer container =
+                createContainer().withEnv("NEO4J_MEMORY_FOOTPRINT", "low").withEnv(jvmAdditional.envName, "-Xss2m")) {
+            neo4jConf = ConfigRenderer.renderConfFile(container, temporaryFolderManager, "neo4j.conf");
+        }
+        Assertions.assertTrue(neo4jConf.contains(jvmAdditional.name + "=-Xss2m"), "User's stack size was removed");
+        Assertions.assertFalse(
+                neo4jConf.contains("-XX:ThreadStackSize"), "Should not override the stack size set by the user");
+    }
+
+    @Test
+    @Tag("PerformanceTest")
+    void testLowFootprintReducesRss() throws Exception {
+        Assumptions.assumeTrue(imageHasJava25(), "Low memory footprint mode is for the Java 25 images");
+        long defaultRss = Measurements.median(() -> getNeo4jRssKb(null));
+        long lowRss = Measurements.median(() -> getNeo4jRssKb("low"));
+        Assertions.assertTrue(
+                Measurements.isSmallerByAtLeast(lowRss, defaultRss, 0.05),
+                "Low memory footprint mode did not reduce RSS by at least 5%. Default: " + defaultRss + "kB, low: "
+                        + lowRss + "kB");
+    }
+}
@@ -148,6 +148,46 @@ public class TestBundledPluginInstallation {
         }
     }
 
+    static Stream<Arguments> pluginProcedurePrefixArgs() {
+        return Stream.of(
+                Arguments.arguments(APOC, "apoc."), Arguments.arguments(GDS, "gds."), Arguments.arguments(BLOOM, null));
+    }
+
+    @ParameterizedTest(name = "testBundledPluginProceduresLoad_{0}")
+    @MethodSource("pluginProcedurePrefixArgs")
+    void testBundledPluginProceduresLoad(BundledPlugin plugin, @Nullable String procedurePrefix) throws Exception {
+        // Images built with JAVA_RUNTIME=jlink only have the Java modules that were found to be needed,
+        // so this checks that the plugins still load and register their procedures, whichever runtime the image has.
+        Assumptions.assumeTrue(
+                TestSettings.NEO4J_VERSION.isCalver(), "Calver images are the ones that can have a jlink runtime");
+        Assumptions.assumeTrue(
+                plugin.shouldBePresentInImage(), "test only applies when the plugin " + plugin.name + " is present");
+
+        try (GenericContainer container = createContainerWithBundledPlugin(plugin)) {
+            if (plugin == BLOOM) {
+                // bloom will not start without a license file, but does not register procedures without a real one.
+                container.withEnv("NEO4J_dbms_bloom_license__file", "/licenses/bloom.license");
+                Path licenseFolder = temporaryFolderManager.createFolderAndMountAsVolume(container, "/licenses");
+                Files.writeString(licenseFolder.resolve("bloom.license"), "notareallicense");
+            }
+            container.start();
+            DatabaseIO dbio = new DatabaseIO(container);
+            dbio.putInitialDataIntoContainer("neo4j", "none");
+            if (procedurePrefix != null) {
+                long procedures = dbio.runCypherQuery(
+                                "neo4j",
+                                "none",
+                                "SHOW PROCEDURES YIELD name WHERE name STARTS WITH '" + procedurePrefix
+                                        + "' RETURN count(*) AS count")
+                        .get(0)
+                        .get("count")
+                        .asLong();
+                Assertions.assertTrue(
+                        procedures > 0, "No " + procedurePrefix + "* procedures were registered by " + plugin.name);
+            }
+        }
+    }
+
     @Test
     void testPluginLoadsWithAuthentication() throws Exception {
         Assumptions.assumeTrue(TestSettings.NEO4J_VERSION.isAtLeastVersion(Neo4jVersion.NEO4J_VERSION_500));
@@ -6,15 +6,20 @@ import com.github.dockerjava.api.command.CreateContainerCmd;
 import com.neo4j.docker.coredb.configurations.Configuration;
 import com.neo4j.docker.coredb.configurations.Setting;
 import com.neo4j.docker.utils.DatabaseIO;
+import com.neo4j.docker.utils.HostFileHttpHandler;
 import com.neo4j.docker.utils.HttpServerTestExtension;
 import com.neo4j.docker.utils.Neo4jVersion;
 import com.neo4j.docker.utils.SetContainerUser;
 import com.neo4j.docker.utils.TemporaryFolderManager;
 import com.neo4j.docker.utils.TestSettings;
 import com.neo4j.docker.utils.WaitStrategies;
+import com.sun.net.httpserver.HttpHandler;
+import java.io.File;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Duration;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Assumptions;
@@ -263,4 +268,178 @@ public class TestPluginInstallation {
             stubPluginHelper.verifyStubPluginLoaded(databaseIO, DB_USER, DB_PASSWORD);
         }
     }
+
+    @ParameterizedTest(name = "as_current_user_{0}")
+    @ValueSource(booleans = {true, false})
+    void testPluginIsInstalledFromCacheOnSecondStart(boolean asCurrentUser) throws Exception {
+        Assumptions.assumeTrue(NEO4J_VERSION.isCalver(), "The plugin cache is only in calver images");
+        Path pluginsDir = temporaryFolderManager.createFolder("plugins");
+        Path pluginCache = temporaryFolderManager.createFolder("plugin-cache");
+        stubPluginHelper.createStubPluginForVersion(pluginsDir, NEO4J_VERSION);
+        try (GenericContainer container = createContainerWithTestingPlugin(asCurrentUser)) {
+            temporaryFolderManager.mountHostFolderAsVolume(container, pluginCache, "/plugin-cache");
+            container.start();
+            stubPluginHelper.verifyStubPluginLoaded(new DatabaseIO(container), DB_USER, DB_PASSWORD);
+        }
+        Assertions.assertTrue(httpServer.getRequestCount() > 0, "The plugin was not downloaded on the first start");
+        try (var cachedJars = Files.list(pluginCache.resolve("sha256"))) {
+            Assertions.assertEquals(
+                    1,
+                    cachedJars
+                            .filter(jar -> jar.getFileName().toString().matches("[0-9a-f]{64}\\.jar"))
+                            .count(),
+                    "The plugin jar was not stored in the cache by its checksum");
+        }
+
+        httpServer.resetRequestCount();
+        try (GenericContainer container = createContainerWithTestingPlugin(asCurrentUser)) {
+            temporaryFolderManager.mountHostFolderAsVolume(container, pluginCache, "/plugin-cache");
+            container.start();
+            stubPluginHelper.verifyStubPluginLoaded(new DatabaseIO(container), DB_USER, DB_PASSWORD);
+            Assertions.assertTrue(
+                    container.getLogs(OutputFrame.OutputType.STDOUT).contains("from the plugin cache"),
+                    "The plugin was not installed from the cache");
+        }
+        Assertions.assertEquals(
+                0, httpServer.getRequestCount(), "The plugin should be installed from the cache without any downloads");
+    }
+
+    @Test
+    void testCorruptCachedPluginIsDownloadedAgain() throws Exception {
+        Assumptions.assumeTrue(NEO4J_VERSION.isCalver(), "The plugin cache is only in calver images");
+        Path pluginsDir = temporaryFolderManager.createFolder("plugins");
+        Path pluginCache = temporaryFolderManager.createFolder("plugin-cache");
+        stubPluginHelper.createStubPluginForVersion(pluginsDir, NEO4J_VERSION);
+        try (GenericContainer container = createContainerWithTestingPlugin(false)) {
+            temporaryFolderManager.mountHostFolderAsVolume(container, pluginCache, "/plugin-cache");
+            container.start();
+        }
+        List<Path> cachedJars;
+        try (var files = Files.list(pluginCache.resolve("sha256"))) {
+            cachedJars = files.filter(jar -> jar.getFileName().toString().endsWith(".jar"))
+                    .toList();
+        }
+        Assertions.assertEquals(1, cachedJars.size(), "The plugin jar was not stored in the cache");
+        Files.writeString(cachedJars.get(0), "not a jar");
+
+        httpServer.resetRequestCount();
+        try (GenericContainer container = createContainerWithTestingPlugin(false)) {
+            temporaryFolderManager.mountHostFolderAsVolume(container, pluginCache, "/plugin-cache");
+            container.start();
+            stubPluginHelper.verifyStubPluginLoaded(new DatabaseIO(container), DB_USER, DB_PASSWORD);
+            Assertions.assertTrue(
+                    container.getLogs(OutputFrame.OutputType.STDERR).contains("does not match its checksum"),
+                    "There was no warning about the corrupt cached plugin");
+        }
+        Assertions.assertTrue(httpServer.getRequestCount() > 0, "The corrupt cached plugin was not downloaded again");
+        Assertions.assertNotEquals(
+                "not a jar", Files.readString(cachedJars.get(0)), "The corrupt jar was not replaced in the cache");
+    }
+
+    @Test
+    void testReadOnlyPluginCacheFallsBackToDownloading() throws Exception {
+        Assumptions.assumeTrue(NEO4J_VERSION.isCalver(), "The plugin cache is only in calver images");
+        Path pluginsDir = temporaryFolderManager.createFolder("plugins");
+        Path pluginCache = temporaryFolderManager.createFolder("plugin-cache");
+        stubPluginHelper.createStubPluginForVersion(pluginsDir, NEO4J_VERSION);
+        pluginCache.toFile().setWritable(false, false);
+        try (GenericContainer container = createContainerWithTestingPlugin(true)) {
+            temporaryFolderManager.mountHostFolderAsVolume(container, pluginCache, "/plugin-cache");
+            container.start();
+            stubPluginHelper.verifyStubPluginLoaded(new DatabaseIO(container), DB_USER, DB_PASSWORD);
+            Assertions.assertTrue(
+                    container.getLogs(OutputFrame.OutputType.STDERR).contains("/plugin-cache is not writable"),
+                    "There was no warning that the plugin cache could not be used");
+        } finally {
+            pluginCache.toFile().setWritable(true, false);
+        }
+        Assertions.assertTrue(httpServer.getRequestCount() > 0, "The plugin was not downloaded");
+    }
+
+    private HttpHandler slowHandler(HttpHandler handler, AtomicInteger inFlight, AtomicInteger maxInFlight) {
+        return exchange -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(2000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                inFlight.decrementAndGet();
+            }
+            handler.handle(exchange);
+        };
+    }
+
+    @Test
+    void testMultiplePluginsAreDownloadedConcurrentlyAndConfiguredInOrder() throws Exception {
+        Assumptions.assumeTrue(NEO4J_VERSION.isCalver(), "Concurrent plugin downloads are only in calver images");
+        Path versionsDir = temporaryFolderManager.createFolder("versions");
+        File versionsJson = stubPluginHelper.createStubPluginForVersion(versionsDir, NEO4J_VERSION);
+        // both plugins' versions.json are slow to respond, so the downloads overlap if they run at the same time
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        HttpHandler versionsHandler = new HostFileHttpHandler(versionsJson, "application/json");
+        httpServer.unregisterEndpoint("versions.json");
+        httpServer.registerHandler("versions.json", slowHandler(versionsHandler, inFlight, maxInFlight));
+        httpServer.registerHandler("versions-concurrent.json", slowHandler(versionsHandler, inFlight, maxInFlight));
+
+        try (GenericContainer container = createContainerWithTestingPlugin(false)) {
+            container.withEnv(Neo4jPluginEnv.get(), "[\"_testing\", \"_testing-concurrent\"]");
+            WaitStrategies.waitUntilContainerFinished(container, Duration.ofSeconds(60));
+            Path pluginsFolder = temporaryFolderManager.createFolderAndMountAsVolume(container, "/plugins");
+            Path confFolder = temporaryFolderManager.createFolderAndMountAsVolume(container, "/conf");
+            container.setCommand("dump-config");
+            container.start();
+
+            Assertions.assertTrue(
+                    Files.exists(pluginsFolder.resolve("_testing.jar")), "Did not find _testing.jar in plugins folder");
+            Assertions.assertTrue(
+                    Files.exists(pluginsFolder.resolve("_testing-concurrent.jar")),
+                    "Did not find _testing-concurrent.jar in plugins folder");
+            Assertions.assertTrue(maxInFlight.get() >= 2, "The plugins were not downloaded at the same time");
+            // each plugin's default is prepended to the setting, so the plugin requested last comes first
+            Assertions.assertTrue(
+                    Files.readAllLines(confFolder.resolve("neo4j.conf"))
+                            .contains("dbms.security.procedures.unrestricted="
+                                    + "com.neo4j.docker.neo4jserver.concurrentplugins.*,"
+                                    + "com.neo4j.docker.neo4jserver.plugins.*"),
+                    "Plugin configuration was not applied in the requested order");
+        }
+    }
+
+    @Test
+    void testFailedConcurrentDownloadIsReportedForThatPlugin() throws Exception {
+        Assumptions.assumeTrue(NEO4J_VERSION.isCalver(), "Concurrent plugin downloads are only in calver images");
+        Path pluginsDir = temporaryFolderManager.createFolder("plugins");
+        stubPluginHelper.createStubPluginForVersion(pluginsDir, NEO4J_VERSION);
+        // there is no versions-concurrent.json, so only _testing-concurrent fails to download
+        httpServer.unregisterEndpoint("versions-concurrent.json");
+        try (GenericContainer container = createContainerWithTestingPlugin(false)) {
+            container.withEnv(Neo4jPluginEnv.get(), "[\"_testing-concurrent\", \"_testing\"]");
+            container.start();
+            stubPluginHelper.verifyStubPluginLoaded(new DatabaseIO(container), DB_USER, DB_PASSWORD);
+            String startupErrors = container.getLogs(OutputFrame.OutputType.STDERR);
+            Assertions.assertTrue(
+                    startupErrors.contains("\"_testing-concurrent\" will not be loaded"),
+                    "Did not report that _testing-concurrent could not be downloaded:\n" + startupErrors);
+            Assertions.assertFalse(
+                    startupErrors.contains("\"_testing\" will not be loaded"),
+                    "_testing was reported as failing too:\n" + startupErrors);
+        }
+    }
+
+    @Test
+    void testInvalidDownloadParallelismFails() {
+        Assumptions.assumeTrue(NEO4J_VERSION.isCalver(), "Concurrent plugin downloads are only in calver images");
+        try (GenericContainer container = createContainerWithTestingPlugin(false)) {
+            container.withEnv("NEO4J_PLUGIN_DOWNLOAD_PARALLELISM", "0");
+            WaitStrategies.waitUntilContainerFinished(container, Duration.ofSeconds(30));
+            Assertions.assertThrows(ContainerLaunchException.class, container::start);
+            Assertions.assertTrue(
+                    container
+                            .getLogs(OutputFrame.OutputType.STDERR)
+                            .contains("Invalid value for NEO4J_PLUGIN_DOWNLOAD_PARALLELISM"),
+                    "Invalid NEO4J_PLUGIN_DOWNLOAD_PARALLELISM value did not give an error");
+        }
+    }
 }
@@ -1,20 +1,31 @@
 package com.neo4j.docker.neo4jadmin;
 
+import com.neo4j.docker.utils.Measurements;
+import com.neo4j.docker.utils.StartupProfile;
+import com.neo4j.docker.utils.TemporaryFolderManager;
 import com.neo4j.docker.utils.TestSettings;
 import com.neo4j.docker.utils.WaitStrategies;
+import java.nio.file.Path;
 import java.time.Duration;
+import java.time.Instant;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.testcontainers.containers.ContainerLaunchException;
 import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.output.OutputFrame;
 import org.testcontainers.containers.output.Slf4jLogConsumer;
 
 public class TestAdminBasic {
     private final Logger log = LoggerFactory.getLogger(TestAdminBasic.class);
 
+    @RegisterExtension
+    public static TemporaryFolderManager temporaryFolderManager = new TemporaryFolderManager();
+
     @Test
     void testCannotRunNeo4j() {
         GenericContainer admin = new GenericContainer(TestSettings.ADMIN_IMAGE_ID);
@@ -28,6 +39,55 @@ public class TestAdminBasic {
         admin.stop();
     }
 
+    @Test
+    void testStartupProfileIsWritten() throws Exception {
+        Assumptions.assumeTrue(TestSettings.NEO4J_VERSION.isCalver(), "Startup profiling is only in calver images");
+        Path logsMount;
+        try (GenericContainer admin = new GenericContainer(TestSettings.ADMIN_IMAGE_ID)) {
+            admin.withEnv("NEO4J_ACCEPT_LICENSE_AGREEMENT", "yes")
+                    .withEnv(StartupProfile.ENV_NAME, "true")
+                    .withLogConsumer(new Slf4jLogConsumer(log))
+                    .withCommand("neo4j-admin", "--version");
+            logsMount = temporaryFolderManager.createFolderAndMountAsVolume(admin, "/logs");
+            WaitStrategies.waitUntilContainerFinished(admin, Duration.ofSeconds(30));
+            admin.start();
+            Assertions.assertTrue(
+                    admin.getLogs(OutputFrame.OutputType.STDOUT).contains("Startup profile:"),
+                    "Did not print a startup profile summary");
+        }
+        StartupProfile profile = StartupProfile.readFromLogsFolder(logsMount);
+        Assertions.assertEquals("neo4j-admin", profile.getEntrypoint());
+        Assertions.assertNotNull(profile.getPhase("mount-permissions"), "Missing mount-permissions phase");
+    }
+
+    private Duration timeToRunNeo4jAdmin(String jvmCache) {
+        try (GenericContainer admin = new GenericContainer(TestSettings.ADMIN_IMAGE_ID)) {
+            admin.withEnv("NEO4J_ACCEPT_LICENSE_AGREEMENT", "yes")
+                    .withEnv("NEO4J_JVM_CACHE", jvmCache)
+                    .withLogConsumer(new Slf4jLogConsumer(log))
+                    .withCommand("neo4j-admin", "database", "info");
+            WaitStrategies.waitUntilContainerFinished(admin, Duration.ofSeconds(60));
+            Instant startTime = Instant.now();
+            admin.start();
+            Duration runTime = Duration.between(startTime, Instant.now());
+            log.info("neo4j-admin database info with NEO4J_JVM_CACHE={} took {}ms", jvmCache, runTime.toMillis());
+            return runTime;
+        }
+    }
+
+    @Test
+    @Tag("PerformanceTest")
+    void testJvmCacheReducesStartupTime() throws Exception {
+        Assumptions.assumeTrue(
+                TestSettings.NEO4J_VERSION.isCalver(), "JVM class data caches are only built into calver images");
+        Duration withoutCache = Measurements.median(() -> timeToRunNeo4jAdmin("false"));
+        Duration withCache = Measurements.median(() -> timeToRunNeo4jAdmin("true"));
+        Assertions.assertTrue(
+                Measurements.isSmallerByAtLeast(withCache.toMillis(), withoutCache.toMillis(), 0.05),
+                "neo4j-admin was not at least 5% faster with the JVM class data cache. With cache: "
+                        + withCache.toMillis() + "ms, without: " + withoutCache.toMillis() + "ms");
+    }
+
     @Test
     void testLicenseAcceptanceRequired_Neo4jAdmin() {
         Assumptions.assumeTrue(
@@ -0,0 +1,49 @@
+package com.neo4j.docker.utils;
+
+import static org.testcontainers.shaded.org.awaitility.Awaitility.await;
+
+import java.time.Duration;
+import java.time.Instant;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.output.OutputFrame;
+
+/**Restarts a container in place, the same way {@code docker restart} would.
+ * <p>
+ * Unlike stopping a {@link GenericContainer} and starting a new one, the container keeps its writable layer,
+ * so this can be used to test what the entrypoint does on its second start.
+ * The container logs contain the output of every start, so any assertions on the logs need to account for that.
+ * <p>
+ * Host port mappings may change on restart, so after restarting, the container should only be inspected through
+ * its logs or with {@code execInContainer}.
+ * */
+public class ContainerRestart {
+    private static final Logger log = LoggerFactory.getLogger(ContainerRestart.class);
+    private static final String NEO4J_STARTED_MESSAGE = "Started.";
+
+    private ContainerRestart() {}
+
+    /**@return how long it took from requesting the restart until neo4j had started again.*/
+    public static Duration restartAndWaitForNeo4jStarted(GenericContainer container, Duration timeout) {
+        int timesStartedBefore = countInLogs(container, NEO4J_STARTED_MESSAGE);
+        log.info("Restarting container {}", container.getContainerId());
+        Instant restartTime = Instant.now();
+        container
+                .getDockerClient()
+                .restartContainerCmd(container.getContainerId())
+                .exec();
+        await().atMost(timeout)
+                .pollInterval(Duration.ofMillis(200))
+                .until(() -> countInLogs(container, NEO4J_STARTED_MESSAGE) > timesStartedBefore);
+        Duration timeToStart = Duration.between(restartTime, Instant.now());
+        log.info("Neo4j restarted in {}ms", timeToStart.toMillis());
+        return timeToStart;
+    }
+
+    /**@return how many times the given text appears in the stdout of the container, across all of its starts.*/
+    public static int countInLogs(GenericContainer container, String text) {
+        return StringUtils.countMatches(container.getLogs(OutputFrame.OutputType.STDOUT), text);
+    }
+}
@@ -3,6 +3,9 @@ package com.neo4j.docker.utils;
 import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
 import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.jupiter.api.extension.AfterEachCallback;
 import org.junit.jupiter.api.extension.BeforeEachCallback;
 import org.junit.jupiter.api.extension.ExtensionContext;
@@ -13,11 +16,16 @@ import org.junit.jupiter.api.extension.ExtensionContext;
 public class HttpServerTestExtension implements AfterEachCallback, BeforeEachCallback {
     public final int PORT = 3000;
     private HttpServer server;
+    private ExecutorService executor;
+    private final AtomicInteger requestCount = new AtomicInteger();
 
     @Override
     public void beforeEach(ExtensionContext extensionContext) throws Exception {
         server = HttpServer.create(new InetSocketAddress(PORT), 0);
-        server.setExecutor(null); // creates a default executor
+        // requests are handled on several threads, so that concurrent downloads are not serialised by the test server
+        executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        requestCount.set(0);
         server.start();
     }
 
@@ -26,6 +34,9 @@ public class HttpServerTestExtension implements AfterEachCallback, BeforeEachCal
         if (server != null) {
             server.stop(5); // waits up to 5 seconds to stop serving http requests
         }
+        if (executor != null) {
+            executor.shutdownNow();
+        }
     }
 
     // Register a handler to provide desired behaviour on a specific uri path
@@ -33,7 +44,19 @@ public class HttpServerTestExtension implements AfterEachCallback, BeforeEachCal
         if (!uriToHandle.startsWith("/")) {
             uriToHandle = '/' + uriToHandle;
         }
-        server.createContext(uriToHandle, httpHandler);
+        server.createContext(uriToHandle, exchange -> {
+            requestCount.incrementAndGet();
+            httpHandler.handle(exchange);
+        });
+    }
+
+    // The number of requests made to registered handlers since the test started or the count was last reset
+    public int getRequestCount() {
+        return requestCount.get();
+    }
+
+    public void resetRequestCount() {
+        requestCount.set(0);
     }
 
     public void unregisterEndpoint(String endpoint) {
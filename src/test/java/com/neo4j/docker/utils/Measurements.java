@@ -0,0 +1,37 @@
+package com.neo4j.docker.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**Helps tests that check a setting makes neo4j faster or smaller.
+ * <p>
+ * One measurement on a shared machine is too noisy to compare, so these tests take the median of several runs
+ * and expect a clear difference, not just any difference.
+ * They are tagged {@code PerformanceTest}, so they only run with the {@code performance} or {@code all-tests}
+ * maven profiles.
+ * */
+public class Measurements {
+    public static final int RUNS = 3;
+
+    private Measurements() {}
+
+    public interface Measurement<T> {
+        T measure() throws Exception;
+    }
+
+    /**@return the median of {@link #RUNS} measurements.*/
+    public static <T extends Comparable<T>> T median(Measurement<T> measurement) throws Exception {
+        List<T> results = new ArrayList<>();
+        for (int i = 0; i < RUNS; i++) {
+            results.add(measurement.measure());
+        }
+        Collections.sort(results);
+        return results.get(RUNS / 2);
+    }
+
+    /**@return whether {@code smaller} is less than {@code larger} by at least {@code margin}, a fraction of {@code larger}.*/
+    public static boolean isSmallerByAtLeast(long smaller, long larger, double margin) {
+        return smaller <= larger * (1 - margin);
+    }
+}
@@ -0,0 +1,86 @@
+package com.neo4j.docker.utils;
+
+import com.google.gson.Gson;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**Timings of each phase of a container entrypoint, as written to <code>startup-profile.json</code>
+ * when the container is started with <code>NEO4J_STARTUP_PROFILE=true</code>.
+ * <p>
+ * The coredb entrypoint writes the file to <code>/logs</code>, and the neo4j-admin entrypoint writes it to
+ * <code>/logs</code> if that is mounted, otherwise to <code>$NEO4J_HOME/logs</code>.
+ * */
+public class StartupProfile {
+    public static final String ENV_NAME = "NEO4J_STARTUP_PROFILE";
+    public static final String FILENAME = "startup-profile.json";
+
+    /**Data class matching the json written by the entrypoint, so that GSON can read it.*/
+    private static class ProfileJson {
+        String entrypoint;
+        double total_ms;
+        List<PhaseJson> phases;
+    }
+
+    private static class PhaseJson {
+        String name;
+        double duration_ms;
+    }
+
+    private final String entrypoint;
+    private final Duration total;
+    private final Map<String, Duration> phases = new LinkedHashMap<>();
+
+    private StartupProfile(ProfileJson json) {
+        this.entrypoint = json.entrypoint;
+        this.total = millisToDuration(json.total_ms);
+        if (json.phases != null) {
+            for (PhaseJson phase : json.phases) {
+                this.phases.put(phase.name, millisToDuration(phase.duration_ms));
+            }
+        }
+    }
+
+    public static StartupProfile parse(String json) {
+        return new StartupProfile(new Gson().fromJson(json, ProfileJson.class));
+    }
+
+    /**@param logsFolder host folder that was mounted to <code>/logs</code> in the container.*/
+    public static StartupProfile readFromLogsFolder(Path logsFolder) throws IOException {
+        return parse(Files.readString(logsFolder.resolve(FILENAME)));
+    }
+
+    private static Duration millisToDuration(double millis) {
+        return Duration.ofNanos(Math.round(millis * 1_000_000));
+    }
+
+    /**@return which entrypoint wrote the profile, either <code>coredb</code> or <code>neo4j-admin</code>.*/
+    public String getEntrypoint() {
+        return entrypoint;
+    }
+
+    /**@return time from the start of the entrypoint until it started the requested command.*/
+    public Duration getTotal() {
+        return total;
+    }
+
+    /**@return how long each phase took, in the order they ran.*/
+    public Map<String, Duration> getPhases() {
+        return Collections.unmodifiableMap(phases);
+    }
+
+    /**@return how long the given phase took, or null if the entrypoint did not record that phase.*/
+    public Duration getPhase(String phaseName) {
+        return phases.get(phaseName);
+    }
+
+    @Override
+    public String toString() {
+        return "StartupProfile{entrypoint=" + entrypoint + ", total=" + total.toMillis() + "ms, phases=" + phases + "}";
+    }
+}
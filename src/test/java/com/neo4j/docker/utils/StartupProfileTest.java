@@ -0,0 +1,41 @@
+package com.neo4j.docker.utils;
+
+import java.time.Duration;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+// This is a test for a test utility. It does not actually test anything to do with the docker image.
+class StartupProfileTest {
+    private static final String PROFILE_JSON = "{\"entrypoint\":\"coredb\",\"total_ms\":1234.567,\"phases\":["
+            + "{\"name\":\"setup\",\"duration_ms\":2.500},"
+            + "{\"name\":\"secrets\",\"duration_ms\":0.042},"
+            + "{\"name\":\"dry-run\",\"duration_ms\":1100.000}]}";
+
+    @Test
+    void testParse() {
+        StartupProfile profile = StartupProfile.parse(PROFILE_JSON);
+        Assertions.assertEquals("coredb", profile.getEntrypoint());
+        Assertions.assertEquals(Duration.ofNanos(1_234_567_000), profile.getTotal());
+        Assertions.assertEquals(Duration.ofMillis(1100), profile.getPhase("dry-run"));
+        Assertions.assertEquals(Duration.ofNanos(42_000), profile.getPhase("secrets"));
+        Assertions.assertNull(profile.getPhase("plugins"), "Should not have a phase that was not in the json");
+    }
+
+    @Test
+    void testPhasesAreInOrder() {
+        StartupProfile profile = StartupProfile.parse(PROFILE_JSON);
+        Assertions.assertEquals(
+                List.of("setup", "secrets", "dry-run"),
+                List.copyOf(profile.getPhases().keySet()),
+                "Phases should be in the order the entrypoint ran them");
+    }
+
+    @Test
+    void testNoPhases() {
+        StartupProfile profile =
+                StartupProfile.parse("{\"entrypoint\":\"neo4j-admin\",\"total_ms\":0.5,\"phases\":[]}");
+        Assertions.assertEquals("neo4j-admin", profile.getEntrypoint());
+        Assertions.assertTrue(profile.getPhases().isEmpty());
+    }
+}